@@ -0,0 +1,112 @@
+package com.zac4j.sample;
+
+import android.view.Choreographer;
+import java.util.Arrays;
+
+/**
+ * Measures frame intervals with {@link Choreographer} over a rolling window of recent frames and
+ * reports them to a listener a few times per second.
+ */
+
+class FrameTimeMonitor implements Choreographer.FrameCallback {
+
+  /**
+   * Receives frame stats on the UI thread.
+   */
+  interface Listener {
+
+    void onFrameStats(FrameTimeMonitor monitor);
+  }
+
+  private static final int WINDOW_SIZE = 120;
+  private static final long REPORT_INTERVAL_NANOS = 500000000L;
+  // Frames longer than this missed at least one vsync at 60 fps.
+  private static final long JANK_NANOS = 17000000L;
+
+  private final Listener mListener;
+  // Rolling window of frame intervals.
+  private final long[] mIntervals = new long[WINDOW_SIZE];
+  // Sorted copy of the window, reused across reports.
+  private final long[] mSorted = new long[WINDOW_SIZE];
+  private int mCount;
+  private int mNext;
+  private long mLastFrameNanos;
+  private long mLastReportNanos;
+  private long mJankCount;
+  private boolean mRunning;
+
+  // Stats of last report.
+  private long mAverageNanos;
+  private long mP90Nanos;
+  private long mMaxNanos;
+
+  FrameTimeMonitor(Listener listener) {
+    mListener = listener;
+  }
+
+  void start() {
+    if (!mRunning) {
+      mRunning = true;
+      // Intervals across a pause are not frames.
+      mLastFrameNanos = 0;
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+  }
+
+  void stop() {
+    mRunning = false;
+    Choreographer.getInstance().removeFrameCallback(this);
+  }
+
+  @Override public void doFrame(long frameTimeNanos) {
+    if (mLastFrameNanos != 0) {
+      final long interval = frameTimeNanos - mLastFrameNanos;
+      mIntervals[mNext] = interval;
+      mNext = (mNext + 1) % WINDOW_SIZE;
+      mCount = Math.min(mCount + 1, WINDOW_SIZE);
+      if (interval > JANK_NANOS) {
+        mJankCount++;
+      }
+    }
+    mLastFrameNanos = frameTimeNanos;
+    if (mCount > 0 && frameTimeNanos - mLastReportNanos >= REPORT_INTERVAL_NANOS) {
+      mLastReportNanos = frameTimeNanos;
+      report();
+    }
+    if (mRunning) {
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+  }
+
+  private void report() {
+    System.arraycopy(mIntervals, 0, mSorted, 0, mCount);
+    Arrays.sort(mSorted, 0, mCount);
+    long sum = 0;
+    for (int i = 0; i < mCount; i++) {
+      sum += mSorted[i];
+    }
+    mAverageNanos = sum / mCount;
+    mP90Nanos = mSorted[(mCount - 1) * 9 / 10];
+    mMaxNanos = mSorted[mCount - 1];
+    mListener.onFrameStats(this);
+  }
+
+  long getAverageNanos() {
+    return mAverageNanos;
+  }
+
+  long getP90Nanos() {
+    return mP90Nanos;
+  }
+
+  long getMaxNanos() {
+    return mMaxNanos;
+  }
+
+  /**
+   * @return number of frames that missed a vsync since the monitor was created.
+   */
+  long getJankCount() {
+    return mJankCount;
+  }
+}
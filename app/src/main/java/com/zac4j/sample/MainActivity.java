@@ -4,95 +4,407 @@ import android.content.Context;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.StaggeredGridLayoutManager;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
+import android.widget.Spinner;
 import android.widget.TextView;
 import com.zac4j.decor.DashDivider;
-import com.zac4j.decor.GridDashedDivider;
+import com.zac4j.decor.DashRenderer;
+import com.zac4j.decor.DrawMetrics;
+import com.zac4j.decor.GridDashDivider;
+import com.zac4j.decor.SectionDashDivider;
+import com.zac4j.decor.StaggeredGridDashDivider;
 import java.util.ArrayList;
 import java.util.List;
 
-public class MainActivity extends AppCompatActivity {
+/**
+ * Scroll stress benchmark: a grid and a list fed by a {@link StockFeed} of 100k+ rows with high
+ * rate price ticks, every divider mode can be toggled while scrolling and frame times are shown
+ * on screen. The grid switches to a staggered grid, the list to per item styles or to sticky
+ * section dividers.
+ */
+
+public class MainActivity extends AppCompatActivity
+    implements StockFeed.Listener, FrameTimeMonitor.Listener {
+
+  // Dash renderers by spinner position, see R.array.renderers.
+  private static final int[] RENDERERS = {
+      DashRenderer.PATH_EFFECT, DashRenderer.SHADER, DashRenderer.BITMAP, DashRenderer.AUTO
+  };
+  private static final int SPAN_COUNT = 4;
+  // List style of falling stocks.
+  private static final int STYLE_FALLING = 1;
+  // Rows per list section.
+  private static final int SECTION_SIZE = 50;
+
+  private RecyclerView mStockGridView;
+  private RecyclerView mStockListView;
+  private StockListAdapter mGridAdapter;
+  private StockListAdapter mListAdapter;
+  // Attached grid divider, one of them is null.
+  private GridDashDivider mGridDivider;
+  private StaggeredGridDashDivider mStaggeredDivider;
+  // Attached list divider, one of them is null.
+  private DashDivider mListDivider;
+  private SectionDashDivider mSectionDivider;
+  private TextView mStatsView;
+
+  private CheckBox mGridBatchDraw;
+  private CheckBox mGridCoalesce;
+  private CheckBox mGridDisplayList;
+  private CheckBox mGridReserveSpace;
+  private CheckBox mGridIncremental;
+  private CheckBox mGridStaggered;
+  private Spinner mGridRenderer;
+  private CheckBox mListBatchDraw;
+  private CheckBox mListDisplayList;
+  private CheckBox mListReserveSpace;
+  private CheckBox mListStyles;
+  private CheckBox mListSections;
+  private CheckBox mListSticky;
+  private Spinner mListRenderer;
+
+  private StockFeed mStockFeed;
+  private FrameTimeMonitor mFrameTimeMonitor;
 
   @Override protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
-    RecyclerView stockListView = findViewById(R.id.main_rv_list);
-    RecyclerView stockGridView = findViewById(R.id.main_rv_grid);
+    mStockListView = findViewById(R.id.main_rv_list);
+    mStockGridView = findViewById(R.id.main_rv_grid);
+    mStatsView = findViewById(R.id.main_tv_stats);
+
+    updateListUi();
+    updateGridUi();
+
+    mStockFeed = new StockFeed(getResources().getStringArray(R.array.stocks), this);
+    mFrameTimeMonitor = new FrameTimeMonitor(this);
+  }
+
+  @Override protected void onStart() {
+    super.onStart();
+    mStockFeed.start();
+    mFrameTimeMonitor.start();
+  }
 
-    updateListUi(stockListView);
-    updateGridUi(stockGridView);
+  @Override protected void onStop() {
+    super.onStop();
+    mStockFeed.stop();
+    mFrameTimeMonitor.stop();
+  }
+
+  @Override protected void onDestroy() {
+    super.onDestroy();
+    mStockFeed.release();
   }
 
   /**
    * Demonstrate for LinearLayoutManager divider
    */
-  private void updateListUi(RecyclerView stockListView) {
-    stockListView.setLayoutManager(
+  private void updateListUi() {
+    mStockListView.setLayoutManager(
         new LinearLayoutManager(this, LinearLayoutManager.VERTICAL, false));
-    RecyclerView.ItemDecoration dashDivider = new DashDivider.Builder(this).dashGap(5)
+    mListAdapter = new StockListAdapter(this);
+    mStockListView.setAdapter(mListAdapter);
+
+    mListBatchDraw = findViewById(R.id.main_cb_list_batch_draw);
+    mListDisplayList = findViewById(R.id.main_cb_list_display_list);
+    mListReserveSpace = findViewById(R.id.main_cb_list_reserve_space);
+    mListStyles = findViewById(R.id.main_cb_list_styles);
+    mListSections = findViewById(R.id.main_cb_list_sections);
+    mListSticky = findViewById(R.id.main_cb_list_sticky);
+    mListRenderer = findViewById(R.id.main_sp_list_renderer);
+    buildListDivider();
+
+    // Draw modes switch in place, builder only modes rebuild the divider.
+    CompoundButton.OnCheckedChangeListener modeListener =
+        new CompoundButton.OnCheckedChangeListener() {
+          @Override public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+            if (mListDivider != null) {
+              mListDivider.setBatchDrawEnabled(mListBatchDraw.isChecked());
+              mListDivider.setDisplayListCacheEnabled(mListDisplayList.isChecked());
+            } else {
+              mSectionDivider.setBatchDrawEnabled(mListBatchDraw.isChecked());
+              mSectionDivider.setStickyEnabled(mListSticky.isChecked());
+            }
+            mStockListView.invalidate();
+          }
+        };
+    mListBatchDraw.setOnCheckedChangeListener(modeListener);
+    mListDisplayList.setOnCheckedChangeListener(modeListener);
+    mListSticky.setOnCheckedChangeListener(modeListener);
+    CompoundButton.OnCheckedChangeListener rebuildListener =
+        new CompoundButton.OnCheckedChangeListener() {
+          @Override public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+            buildListDivider();
+          }
+        };
+    mListReserveSpace.setOnCheckedChangeListener(rebuildListener);
+    mListStyles.setOnCheckedChangeListener(rebuildListener);
+    mListSections.setOnCheckedChangeListener(rebuildListener);
+    mListRenderer.setOnItemSelectedListener(new RendererListener() {
+      @Override public void onItemSelected(AdapterView<?> parent, View view, int position,
+          long id) {
+        buildListDivider();
+      }
+    });
+  }
+
+  private void buildListDivider() {
+    if (mListDivider != null) {
+      mStockListView.removeItemDecoration(mListDivider);
+      mListDivider = null;
+    }
+    if (mSectionDivider != null) {
+      mStockListView.removeItemDecoration(mSectionDivider);
+      mSectionDivider = null;
+    }
+    // Section dividers have no display list cache and no per item styles.
+    final boolean sections = mListSections.isChecked();
+    mListDisplayList.setEnabled(!sections);
+    mListStyles.setEnabled(!sections);
+    mListSticky.setEnabled(sections);
+    if (sections) {
+      mSectionDivider = new SectionDashDivider.Builder(this).dashGap(5)
+          .dashLength(5)
+          .dashThickness(3)
+          .color(ContextCompat.getColor(this, R.color.colorPrimary))
+          .sectionColor(ContextCompat.getColor(this, R.color.colorAccent))
+          .sections(sectionStarts())
+          .sticky(mListSticky.isChecked())
+          .batchDraw(mListBatchDraw.isChecked())
+          .reserveSpace(mListReserveSpace.isChecked())
+          .renderer(RENDERERS[mListRenderer.getSelectedItemPosition()])
+          .build();
+      mSectionDivider.setMetricsEnabled(true);
+      mStockListView.addItemDecoration(mSectionDivider);
+      return;
+    }
+    DashDivider.Builder builder = new DashDivider.Builder(this).dashGap(5)
         .dashLength(5)
         .dashThickness(3)
         .color(ContextCompat.getColor(this, R.color.colorPrimary))
-        .build();
-    stockListView.addItemDecoration(dashDivider);
+        .batchDraw(mListBatchDraw.isChecked())
+        .cacheDisplayList(mListDisplayList.isChecked())
+        .reserveSpace(mListReserveSpace.isChecked())
+        .renderer(RENDERERS[mListRenderer.getSelectedItemPosition()]);
+    if (mListStyles.isChecked()) {
+      builder.style(STYLE_FALLING, 5, 5, 3, ContextCompat.getColor(this, R.color.colorAccent))
+          .styleResolver(new DashDivider.StyleResolver() {
+            @Override public int getStyle(int position) {
+              return mListAdapter.getChange(position) < 0 ? STYLE_FALLING : 0;
+            }
+          });
+    }
+    mListDivider = builder.build();
+    mListDivider.setMetricsEnabled(true);
+    mStockListView.addItemDecoration(mListDivider);
+  }
 
-    StockListAdapter adapter = new StockListAdapter(this);
-    stockListView.setAdapter(adapter);
-    adapter.addStockList(fetchData());
+  /**
+   * @return start positions of list sections, sections of later rows are set up front.
+   */
+  private static int[] sectionStarts() {
+    final int[] starts = new int[StockFeed.ROW_COUNT / SECTION_SIZE];
+    for (int i = 0; i < starts.length; i++) {
+      starts[i] = i * SECTION_SIZE;
+    }
+    return starts;
   }
 
   /**
    * Demonstrate for GridLayoutManager divider
    */
-  private void updateGridUi(RecyclerView stockGridView) {
-    stockGridView.setLayoutManager(new GridLayoutManager(this, 4));
-    RecyclerView.ItemDecoration dashDivider =
-        new GridDashedDivider.Builder(this)
-            .drawer(true, false, true, true)
-            .hider(false, false, false, true)
-            .offset(1.2f, 40, 1.2f, 40)
-            .build();
-    stockGridView.addItemDecoration(dashDivider);
+  private void updateGridUi() {
+    mGridAdapter = new StockListAdapter(this);
+    mStockGridView.setAdapter(mGridAdapter);
+
+    mGridBatchDraw = findViewById(R.id.main_cb_grid_batch_draw);
+    mGridCoalesce = findViewById(R.id.main_cb_grid_coalesce);
+    mGridDisplayList = findViewById(R.id.main_cb_grid_display_list);
+    mGridReserveSpace = findViewById(R.id.main_cb_grid_reserve_space);
+    mGridIncremental = findViewById(R.id.main_cb_grid_incremental);
+    mGridStaggered = findViewById(R.id.main_cb_grid_staggered);
+    mGridRenderer = findViewById(R.id.main_sp_grid_renderer);
+    buildGridDivider();
+
+    CompoundButton.OnCheckedChangeListener modeListener =
+        new CompoundButton.OnCheckedChangeListener() {
+          @Override public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+            if (mGridDivider != null) {
+              mGridDivider.setBatchDrawEnabled(mGridBatchDraw.isChecked());
+              mGridDivider.setCoalesceEnabled(mGridCoalesce.isChecked());
+              mGridDivider.setDisplayListCacheEnabled(mGridDisplayList.isChecked());
+              mGridDivider.setIncrementalEnabled(mGridIncremental.isChecked());
+            } else {
+              mStaggeredDivider.setBatchDrawEnabled(mGridBatchDraw.isChecked());
+            }
+            mStockGridView.invalidate();
+          }
+        };
+    mGridBatchDraw.setOnCheckedChangeListener(modeListener);
+    mGridCoalesce.setOnCheckedChangeListener(modeListener);
+    mGridDisplayList.setOnCheckedChangeListener(modeListener);
+    mGridIncremental.setOnCheckedChangeListener(modeListener);
+    CompoundButton.OnCheckedChangeListener rebuildListener =
+        new CompoundButton.OnCheckedChangeListener() {
+          @Override public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+            buildGridDivider();
+          }
+        };
+    mGridReserveSpace.setOnCheckedChangeListener(rebuildListener);
+    mGridStaggered.setOnCheckedChangeListener(rebuildListener);
+    mGridRenderer.setOnItemSelectedListener(new RendererListener() {
+      @Override public void onItemSelected(AdapterView<?> parent, View view, int position,
+          long id) {
+        buildGridDivider();
+      }
+    });
+  }
+
+  private void buildGridDivider() {
+    if (mGridDivider != null) {
+      mStockGridView.removeItemDecoration(mGridDivider);
+      mGridDivider = null;
+    }
+    if (mStaggeredDivider != null) {
+      mStockGridView.removeItemDecoration(mStaggeredDivider);
+      mStaggeredDivider = null;
+    }
+    // Staggered grid dividers only batch draw calls.
+    final boolean staggered = mGridStaggered.isChecked();
+    mGridCoalesce.setEnabled(!staggered);
+    mGridDisplayList.setEnabled(!staggered);
+    mGridReserveSpace.setEnabled(!staggered);
+    mGridIncremental.setEnabled(!staggered);
+    if (staggered) {
+      if (!(mStockGridView.getLayoutManager() instanceof StaggeredGridLayoutManager)) {
+        mStockGridView.setLayoutManager(
+            new StaggeredGridLayoutManager(SPAN_COUNT, StaggeredGridLayoutManager.VERTICAL));
+      }
+      mStaggeredDivider = new StaggeredGridDashDivider.Builder(this).dashGap(5)
+          .dashLength(5)
+          .dashThickness(3)
+          .color(ContextCompat.getColor(this, R.color.colorPrimary))
+          .drawer(true, false, true, true)
+          .hider(false, false, false, true)
+          .batchDraw(mGridBatchDraw.isChecked())
+          .renderer(RENDERERS[mGridRenderer.getSelectedItemPosition()])
+          .build();
+      mStaggeredDivider.setMetricsEnabled(true);
+      mStockGridView.addItemDecoration(mStaggeredDivider);
+      mGridAdapter.setGridDivider(null);
+      return;
+    }
+    if (!(mStockGridView.getLayoutManager() instanceof GridLayoutManager)) {
+      mStockGridView.setLayoutManager(new GridLayoutManager(this, SPAN_COUNT));
+    }
+    mGridDivider = new GridDashDivider.Builder(this).dashGap(5)
+        .dashLength(5)
+        .dashThickness(3)
+        .color(ContextCompat.getColor(this, R.color.colorPrimary))
+        .drawer(true, false, true, true)
+        .hider(false, false, false, true)
+        .offset(1.2f, 40, 1.2f, 40)
+        .batchDraw(mGridBatchDraw.isChecked())
+        .coalesce(mGridCoalesce.isChecked())
+        .cacheDisplayList(mGridDisplayList.isChecked())
+        .reserveSpace(mGridReserveSpace.isChecked())
+        .incremental(mGridIncremental.isChecked())
+        .renderer(RENDERERS[mGridRenderer.getSelectedItemPosition()])
+        .build();
+    mGridDivider.setMetricsEnabled(true);
+    mStockGridView.addItemDecoration(mGridDivider);
+    mGridAdapter.setGridDivider(mGridDivider);
+  }
+
+  @Override public void onStocksChanged(List<Stock> stocks, DiffUtil.DiffResult diff) {
+    mGridAdapter.setStockList(stocks, diff);
+    mListAdapter.setStockList(stocks, diff);
+  }
+
+  @Override public void onFrameStats(FrameTimeMonitor monitor) {
+    mStatsView.setText(getString(R.string.stats, mGridAdapter.getItemCount(),
+        mStockFeed.getTickCount(), toMillis(monitor.getAverageNanos()),
+        toMillis(monitor.getP90Nanos()), toMillis(monitor.getMaxNanos()),
+        monitor.getJankCount(), toMillis(getGridMetrics()), toMillis(getListMetrics())));
+  }
+
+  private DrawMetrics getGridMetrics() {
+    return mGridDivider != null ? mGridDivider.getMetrics() : mStaggeredDivider.getMetrics();
+  }
 
-    StockListAdapter adapter = new StockListAdapter(this);
-    stockGridView.setAdapter(adapter);
-    adapter.addStockList(fetchData());
+  private DrawMetrics getListMetrics() {
+    return mListDivider != null ? mListDivider.getMetrics() : mSectionDivider.getMetrics();
   }
 
-  private List<Stock> fetchData() {
-    List<Stock> stockList = new ArrayList<>();
-    String[] stocks = getResources().getStringArray(R.array.stocks);
-    for (String stockInfos : stocks) {
-      String[] stockInfo = stockInfos.split(";");
-      Stock stock = new Stock(stockInfo[0], stockInfo[1]);
-      stockList.add(stock);
+  private static float toMillis(long nanos) {
+    return nanos / 1000000f;
+  }
+
+  private static float toMillis(DrawMetrics metrics) {
+    return toMillis(metrics.snapshot().getP90Nanos());
+  }
+
+  /**
+   * Rebuilds a divider once a renderer is picked.
+   */
+  private abstract static class RendererListener implements AdapterView.OnItemSelectedListener {
+
+    @Override public void onNothingSelected(AdapterView<?> parent) {
     }
-    return stockList.subList(0, 7);
   }
 
   class StockListAdapter extends RecyclerView.Adapter<StockListAdapter.StockViewHolder> {
 
     private Context mContext;
     private List<Stock> mStockList;
+    // Resolves dividers of bound items ahead of drawing, null for lists.
+    private GridDashDivider mGridDivider;
+    private RecyclerView mRecyclerView;
 
     StockListAdapter(Context context) {
       this.mContext = context;
       mStockList = new ArrayList<>();
     }
 
-    void addStockList(List<Stock> stockList) {
-      if (stockList == null || stockList.isEmpty()) {
-        return;
-      }
-      int startPosition = mStockList.size();
-      mStockList.addAll(stockList);
-      notifyItemRangeChanged(startPosition, stockList.size());
+    void setGridDivider(GridDashDivider gridDivider) {
+      mGridDivider = gridDivider;
+    }
+
+    /**
+     * @return price change of stock at position in percent, 0 if it is not loaded.
+     */
+    float getChange(int position) {
+      final Stock stock =
+          mStockList != null && position < mStockList.size() ? mStockList.get(position) : null;
+      return stock != null ? stock.getChange() : 0;
+    }
+
+    @Override public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+      mRecyclerView = recyclerView;
+    }
+
+    @Override public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+      mRecyclerView = null;
+    }
+
+    /**
+     * @param diff turns the current stock list into stockList, computed off the UI thread.
+     */
+    void setStockList(List<Stock> stockList, DiffUtil.DiffResult diff) {
+      mStockList = stockList;
+      diff.dispatchUpdatesTo(this);
     }
 
     @Override public StockViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
@@ -100,7 +412,24 @@ public class MainActivity extends AppCompatActivity {
       return new StockViewHolder(itemView);
     }
 
+    @Override public void onBindViewHolder(StockViewHolder holder, int position,
+        List<Object> payloads) {
+      if (!payloads.contains(StockFeed.PAYLOAD_PRICE)) {
+        onBindViewHolder(holder, position);
+        return;
+      }
+      // Price tick, item layout and dividers are unchanged.
+      Stock stock = mStockList.get(position);
+      if (stock != null) {
+        holder.bindPrice(stock);
+      }
+    }
+
     @Override public void onBindViewHolder(StockViewHolder holder, int position) {
+      if (mGridDivider != null && mRecyclerView != null) {
+        // Prefetched items are bound in idle frame time, resolve their dividers there too.
+        mGridDivider.prefetch(mRecyclerView, position);
+      }
       Stock stock = mStockList.get(position);
 
       if (stock == null) {
@@ -121,11 +450,13 @@ public class MainActivity extends AppCompatActivity {
 
       private TextView mNameView;
       private TextView mCodeView;
+      private TextView mPriceView;
 
       StockViewHolder(View itemView) {
         super(itemView);
         mNameView = itemView.findViewById(R.id.item_main_tv_name);
         mCodeView = itemView.findViewById(R.id.item_main_tv_code);
+        mPriceView = itemView.findViewById(R.id.item_main_tv_price);
       }
 
       void bindTo(Stock stock) {
@@ -138,10 +469,16 @@ public class MainActivity extends AppCompatActivity {
 
         if (TextUtils.isEmpty(stock.getCode())) {
           String code = getString(R.string.empty_stock_code);
-          mNameView.setText(code);
+          mCodeView.setText(code);
         } else {
           mCodeView.setText(stock.getCode());
         }
+
+        bindPrice(stock);
+      }
+
+      void bindPrice(Stock stock) {
+        mPriceView.setText(getString(R.string.price, stock.getPrice(), stock.getChange()));
       }
     }
   }
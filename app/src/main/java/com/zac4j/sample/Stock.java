@@ -9,12 +9,22 @@ public class Stock {
 
   private String name;
   private String code;
+  // Last price and change against previous price in percent.
+  private float price;
+  private float change;
 
   public Stock(String name, String code) {
     this.name = name;
     this.code = code;
   }
 
+  public Stock(String name, String code, float price, float change) {
+    this.name = name;
+    this.code = code;
+    this.price = price;
+    this.change = change;
+  }
+
   public String getName() {
     return name;
   }
@@ -30,4 +40,20 @@ public class Stock {
   public void setCode(String code) {
     this.code = code;
   }
+
+  public float getPrice() {
+    return price;
+  }
+
+  public float getChange() {
+    return change;
+  }
+
+  /**
+   * @return a new stock quoted at price, the feed never changes published stocks in place.
+   */
+  public Stock tick(float price) {
+    final float change = this.price == 0 ? 0 : (price - this.price) / this.price * 100;
+    return new Stock(name, code, price, change);
+  }
 }
@@ -0,0 +1,196 @@
+package com.zac4j.sample;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic stock feed for scroll stress tests: rows are paged in and prices tick on a background
+ * thread, each published snapshot comes with its {@link DiffUtil} diff computed off the UI thread.
+ *
+ * Ticks keep accumulating into the working list while a snapshot is being applied, so the feed
+ * never queues more than one snapshot ahead of the UI thread.
+ */
+
+class StockFeed {
+
+  /**
+   * Receives snapshots on the UI thread, in publish order.
+   */
+  interface Listener {
+
+    /**
+     * @param diff turns the previously published snapshot into stocks.
+     */
+    void onStocksChanged(List<Stock> stocks, DiffUtil.DiffResult diff);
+  }
+
+  // Payload of rows whose price changed only, binds just the quote.
+  static final Object PAYLOAD_PRICE = new Object();
+
+  static final int ROW_COUNT = 120000;
+  private static final int PAGE_SIZE = 2000;
+  private static final long PAGE_INTERVAL_MS = 100;
+  // One feed step per display frame, each step ticks TICKS_PER_STEP prices.
+  private static final long STEP_INTERVAL_MS = 16;
+  private static final int TICKS_PER_STEP = 64;
+
+  private final String[] mNames;
+  private final Listener mListener;
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+  private final HandlerThread mThread;
+  private final Handler mWorkerHandler;
+  private final Random mRandom = new Random(0);
+
+  // Worker thread state.
+  private final List<Stock> mWorking = new ArrayList<>();
+  private List<Stock> mPublished = Collections.emptyList();
+  private long mNextPageTime;
+  private volatile long mTickCount;
+
+  // Whether feed steps are scheduled, steps stop rescheduling once cleared.
+  private volatile boolean mRunning;
+  // Whether a snapshot is posted and not yet applied on the UI thread.
+  private volatile boolean mPending;
+
+  private final Runnable mStep = new Runnable() {
+    @Override public void run() {
+      step();
+      if (mRunning) {
+        mWorkerHandler.postDelayed(this, STEP_INTERVAL_MS);
+      }
+    }
+  };
+
+  /**
+   * @param names stock names, rows repeat them with a series suffix.
+   */
+  StockFeed(String[] names, Listener listener) {
+    mNames = names;
+    mListener = listener;
+    mThread = new HandlerThread("StockFeed");
+    mThread.start();
+    mWorkerHandler = new Handler(mThread.getLooper());
+  }
+
+  void start() {
+    if (!mRunning) {
+      mRunning = true;
+      mWorkerHandler.post(mStep);
+    }
+  }
+
+  void stop() {
+    mRunning = false;
+    mWorkerHandler.removeCallbacks(mStep);
+  }
+
+  /**
+   * Stop the feed for good and quit its thread.
+   */
+  void release() {
+    stop();
+    mMainHandler.removeCallbacksAndMessages(null);
+    mThread.quitSafely();
+  }
+
+  /**
+   * @return number of price ticks so far, read from any thread.
+   */
+  long getTickCount() {
+    return mTickCount;
+  }
+
+  private void step() {
+    final long now = System.currentTimeMillis();
+    if (mWorking.size() < ROW_COUNT && now >= mNextPageTime) {
+      loadPage();
+      mNextPageTime = now + PAGE_INTERVAL_MS;
+    }
+    tick();
+    if (!mPending) {
+      publish();
+    }
+  }
+
+  private void loadPage() {
+    final int start = mWorking.size();
+    final int stop = Math.min(start + PAGE_SIZE, ROW_COUNT);
+    for (int i = start; i < stop; i++) {
+      final String name = mNames[i % mNames.length];
+      final int series = i / mNames.length;
+      mWorking.add(new Stock(series == 0 ? name : name + " " + series,
+          String.format(Locale.US, "%06d", i), 10 + mRandom.nextInt(9000) / 100f, 0));
+    }
+  }
+
+  private void tick() {
+    final int size = mWorking.size();
+    if (size == 0) {
+      return;
+    }
+    for (int i = 0; i < TICKS_PER_STEP; i++) {
+      // Skewed toward top rows, like a few hot stocks trading most.
+      final float r = mRandom.nextFloat();
+      final int position = (int) (r * r * r * size);
+      final Stock stock = mWorking.get(position);
+      final float price = stock.getPrice() * (1 + (mRandom.nextFloat() - 0.5f) / 50);
+      mWorking.set(position, stock.tick(Math.max(0.01f, price)));
+    }
+    mTickCount += TICKS_PER_STEP;
+  }
+
+  private void publish() {
+    final List<Stock> stocks = new ArrayList<>(mWorking);
+    // Rows are only appended and updated, move detection is not needed.
+    final DiffUtil.DiffResult diff =
+        DiffUtil.calculateDiff(new StockDiffCallback(mPublished, stocks), false);
+    mPublished = stocks;
+    mPending = true;
+    mMainHandler.post(new Runnable() {
+      @Override public void run() {
+        mPending = false;
+        mListener.onStocksChanged(stocks, diff);
+      }
+    });
+  }
+
+  private static final class StockDiffCallback extends DiffUtil.Callback {
+
+    private final List<Stock> mOldStocks;
+    private final List<Stock> mNewStocks;
+
+    StockDiffCallback(List<Stock> oldStocks, List<Stock> newStocks) {
+      mOldStocks = oldStocks;
+      mNewStocks = newStocks;
+    }
+
+    @Override public int getOldListSize() {
+      return mOldStocks.size();
+    }
+
+    @Override public int getNewListSize() {
+      return mNewStocks.size();
+    }
+
+    @Override public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+      return mOldStocks.get(oldItemPosition).getCode()
+          .equals(mNewStocks.get(newItemPosition).getCode());
+    }
+
+    @Override public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+      // Stocks are replaced on every tick, an unchanged row keeps its instance.
+      return mOldStocks.get(oldItemPosition) == mNewStocks.get(newItemPosition);
+    }
+
+    @Override public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+      return PAYLOAD_PRICE;
+    }
+  }
+}
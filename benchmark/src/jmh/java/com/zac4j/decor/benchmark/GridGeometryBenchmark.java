@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor.benchmark;
+
+import com.zac4j.decor.geometry.GridGeometry;
+import com.zac4j.decor.geometry.SegmentBuffer;
+import com.zac4j.decor.geometry.SegmentCuller;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per frame segment generation of a vertical grid of visible cells, as done by
+ * {@code GridDashDivider#onDraw}.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GridGeometryBenchmark {
+
+  private static final int CELL_SIZE = 120;
+  private static final float THICKNESS = 2f;
+  private static final float PERIOD = 12f;
+
+  @Param({ "10", "100", "1000", "10000" })
+  public int cellCount;
+
+  @Param({ "4" })
+  public int spanCount;
+
+  // Draw all aspects and hide outer dividers, the most demanding strategy.
+  private final GridGeometry mGeometry;
+  private final SegmentCuller mCuller = new SegmentCuller();
+  private final SegmentBuffer mSegments = new SegmentBuffer();
+
+  private int[] mEdges;
+  private float[] mBounds;
+
+  public GridGeometryBenchmark() {
+    mGeometry = new GridGeometry(new boolean[] { true, true, true, true },
+        new boolean[] { true, true, true, true }, new float[4], mCuller);
+    mGeometry.setThickness(THICKNESS, THICKNESS);
+  }
+
+  @Setup public void setUp() {
+    mEdges = new int[cellCount];
+    mBounds = new float[cellCount * 4];
+    final int rowCount = (cellCount + spanCount - 1) / spanCount;
+    for (int i = 0; i < cellCount; i++) {
+      final int row = i / spanCount;
+      final int column = i % spanCount;
+      mEdges[i] = GridGeometry.edgesOf(true, column == 0,
+          column == spanCount - 1 || i == cellCount - 1, row == 0, row == rowCount - 1);
+      mBounds[i * 4] = column * CELL_SIZE;
+      mBounds[i * 4 + 1] = row * CELL_SIZE;
+      mBounds[i * 4 + 2] = (column + 1) * CELL_SIZE;
+      mBounds[i * 4 + 3] = (row + 1) * CELL_SIZE;
+    }
+  }
+
+  @Benchmark public int unclipped() {
+    mCuller.disable();
+    return addCells();
+  }
+
+  /**
+   * Clip covers the middle half of the grid, as a partly scrolled viewport.
+   */
+  @Benchmark public int clipped() {
+    final float height = mBounds[cellCount * 4 - 1];
+    mCuller.begin(0, height / 4, spanCount * CELL_SIZE, height * 3 / 4, THICKNESS, PERIOD);
+    return addCells();
+  }
+
+  @Benchmark public int coalesced() {
+    mCuller.disable();
+    addCells();
+    mSegments.coalesce();
+    return mSegments.segmentCount();
+  }
+
+  private int addCells() {
+    final SegmentBuffer segments = mSegments;
+    final float[] bounds = mBounds;
+    segments.reset();
+    for (int i = 0; i < cellCount; i++) {
+      final int aspects = mGeometry.resolveAspects(mEdges[i]);
+      final int j = i * 4;
+      mGeometry.addItem(segments, aspects, bounds[j], bounds[j + 1], bounds[j + 2],
+          bounds[j + 3], 0, 0);
+    }
+    return segments.segmentCount();
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor.benchmark;
+
+import com.zac4j.decor.geometry.ListGeometry;
+import com.zac4j.decor.geometry.SegmentBuffer;
+import com.zac4j.decor.geometry.SegmentCuller;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per frame segment generation of a vertical list of visible rows, as done by
+ * {@code DashDivider#onDraw}.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ListGeometryBenchmark {
+
+  private static final int ROW_WIDTH = 1080;
+  private static final int ROW_HEIGHT = 96;
+  private static final float THICKNESS = 2f;
+  private static final float PERIOD = 12f;
+
+  @Param({ "10", "100", "1000", "10000" })
+  public int cellCount;
+
+  private final SegmentCuller mCuller = new SegmentCuller();
+  private final ListGeometry mGeometry = new ListGeometry(mCuller);
+  private final SegmentBuffer mSegments = new SegmentBuffer();
+
+  @Setup public void setUp() {
+    mGeometry.setOrientation(ListGeometry.VERTICAL);
+    mGeometry.setThickness(THICKNESS);
+  }
+
+  @Benchmark public int unclipped() {
+    mCuller.disable();
+    return addRows();
+  }
+
+  /**
+   * Clip covers the middle half of the list and the left half of the rows.
+   */
+  @Benchmark public int clipped() {
+    final float height = cellCount * ROW_HEIGHT;
+    mCuller.begin(0, height / 4, ROW_WIDTH / 2, height * 3 / 4, THICKNESS, PERIOD);
+    return addRows();
+  }
+
+  private int addRows() {
+    final SegmentBuffer segments = mSegments;
+    segments.reset();
+    for (int i = 0; i < cellCount; i++) {
+      final float top = i * ROW_HEIGHT;
+      mGeometry.addItem(segments, 0, top, ROW_WIDTH, top + ROW_HEIGHT, 0, 0, 0, 0);
+    }
+    return segments.segmentCount();
+  }
+}
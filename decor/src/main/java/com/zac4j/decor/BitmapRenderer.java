@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.os.AsyncTask;
+import android.view.View;
+import com.zac4j.decor.geometry.SegmentBuffer;
+import java.util.WeakHashMap;
+
+/**
+ * {@link DashRenderer} fills each line with one rect of pre-rendered dash tiles, repeated along
+ * the line by a {@link BitmapShader} anchored at its start, so every line starts a new period.
+ *
+ * Tiles are {@link Bitmap.Config#ALPHA_8} bitmaps of one dash period rendered from the dash
+ * style, one byte per pixel at any density, and tinted by the paint color. They are scaled across
+ * the line to its thickness.
+ *
+ * Tiles are rendered on a background thread once the first line is drawn, so building the
+ * renderer costs nothing at startup. Until they are ready lines are stroked by a path effect
+ * fallback of the same look, and views drawn meanwhile are invalidated once tiles are ready.
+ * Tiles are dropped on memory pressure and rendered again the same way.
+ */
+
+final class BitmapRenderer extends DashRenderer implements DecorMemory.Trimmable {
+
+  private float mThickness;
+  private final float mPeriod;
+  private final int mDashGap;
+  private final int mDashLength;
+  private final int mDashThickness;
+  // Tile offset of line start, the dash phase.
+  private int mPhase;
+  // Rendered tiles, null until loaded.
+  private volatile Tiles mTiles;
+  // Whether tiles were requested since last trim, guarded by this.
+  private boolean mLoading;
+  // Views drawn by the fallback while tiles are rendered, guarded by this.
+  private WeakHashMap<View, Boolean> mPendingViews;
+  // Draws lines until tiles are ready.
+  private final PathEffectRenderer mFallback;
+  // Paints for horizontal and vertical lines, holding shaders of mShaderTiles.
+  private final Paint mHorizontalPaint;
+  private final Paint mVerticalPaint;
+  private Tiles mShaderTiles;
+  // Places tiles at line start, reused across draws on the UI thread.
+  private final Matrix mTileMatrix = new Matrix();
+
+  BitmapRenderer(int dashGap, int dashLength, int dashThickness, int color) {
+    mThickness = dashThickness;
+    mPeriod = dashLength + dashGap;
+    mDashGap = dashGap;
+    mDashLength = dashLength;
+    mDashThickness = dashThickness;
+    mHorizontalPaint = createTilePaint(color);
+    mVerticalPaint = createTilePaint(color);
+    mFallback = new PathEffectRenderer(dashGap, dashLength, dashThickness, color);
+  }
+
+  private static Paint createTilePaint(int color) {
+    final Paint paint = new Paint();
+    paint.setStyle(Paint.Style.FILL);
+    paint.setColor(color);
+    return paint;
+  }
+
+  @Override void prepare() {
+    loadTiles();
+  }
+
+  @Override boolean isLoaded() {
+    return mTiles != null;
+  }
+
+  @Override void invalidateWhenLoaded(View view) {
+    if (mTiles != null) {
+      return;
+    }
+    synchronized (this) {
+      if (mTiles == null) {
+        if (mPendingViews == null) {
+          mPendingViews = new WeakHashMap<>();
+        }
+        mPendingViews.put(view, Boolean.TRUE);
+        return;
+      }
+    }
+    // Tiles were published since the fallback drew.
+    view.postInvalidateOnAnimation();
+  }
+
+  /**
+   * @return rendered tiles, or null if they are not ready yet and loading was started.
+   */
+  private Tiles obtainTiles() {
+    final Tiles tiles = mTiles;
+    if (tiles == null) {
+      startLoading();
+    }
+    return tiles;
+  }
+
+  private synchronized void startLoading() {
+    if (mTiles == null && !mLoading) {
+      mLoading = true;
+      AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+        @Override public void run() {
+          loadTiles();
+        }
+      });
+    }
+  }
+
+  private void loadTiles() {
+    final WeakHashMap<View, Boolean> pendingViews;
+    synchronized (this) {
+      if (mTiles != null) {
+        return;
+      }
+      mTiles = new Tiles(mDashGap, mDashLength, mDashThickness);
+      DecorMemory.register(this);
+      pendingViews = mPendingViews;
+      mPendingViews = null;
+    }
+    if (pendingViews != null) {
+      // Posted to the UI thread of each view, which draws the tiles next frame.
+      for (View view : pendingViews.keySet()) {
+        view.postInvalidateOnAnimation();
+      }
+    }
+  }
+
+  @Override public void trimMemory(int level) {
+    if (!DecorMemory.releasesAll(level)) {
+      return;
+    }
+    final Tiles tiles;
+    synchronized (this) {
+      tiles = mTiles;
+      mTiles = null;
+      mLoading = false;
+    }
+    // Called on the main thread, which draws with the shaders.
+    mShaderTiles = null;
+    mHorizontalPaint.setShader(null);
+    mVerticalPaint.setShader(null);
+    if (tiles != null) {
+      // Not recycled, copies and pending hardware draws may still reference them.
+      DecorMemory.addReleasedBitmapBytes(
+          tiles.mHorizontal.getByteCount() + tiles.mVertical.getByteCount());
+    }
+  }
+
+  @Override DashRenderer copy() {
+    final BitmapRenderer copy =
+        new BitmapRenderer(mDashGap, mDashLength, mDashThickness, getColor());
+    // Tiles are never changed once rendered, copies share them.
+    copy.mTiles = mTiles;
+    if (copy.mTiles != null) {
+      DecorMemory.register(copy);
+    }
+    copy.setThickness(mThickness);
+    copy.setPhase(mPhase);
+    return copy;
+  }
+
+  @Override int getColor() {
+    return mHorizontalPaint.getColor();
+  }
+
+  @Override void setColor(int color) {
+    mHorizontalPaint.setColor(color);
+    mVerticalPaint.setColor(color);
+    mFallback.setColor(color);
+  }
+
+  @Override void setAlpha(int alpha) {
+    mHorizontalPaint.setAlpha(alpha);
+    mVerticalPaint.setAlpha(alpha);
+    mFallback.setAlpha(alpha);
+  }
+
+  @Override void setPhase(float phase) {
+    mPhase = wrapPhase(phase, (int) mPeriod);
+    mFallback.setPhase(phase);
+  }
+
+  @Override void setThickness(float thickness) {
+    // Tiles are scaled across the line to thickness.
+    mThickness = thickness;
+    mFallback.setThickness(thickness);
+  }
+
+  @Override float getThickness() {
+    return mThickness;
+  }
+
+  @Override float getPeriod() {
+    return mPeriod;
+  }
+
+  @Override void drawLine(Canvas canvas, float startX, float startY, float stopX, float stopY) {
+    final Tiles tiles = obtainTiles();
+    if (tiles == null) {
+      mFallback.drawLine(canvas, startX, startY, stopX, stopY);
+      return;
+    }
+    ensureShaders(tiles);
+    fill(canvas, startX, startY, stopX, stopY);
+  }
+
+  @Override int drawLines(Canvas canvas, SegmentBuffer segments) {
+    final Tiles tiles = obtainTiles();
+    if (tiles == null) {
+      return mFallback.drawLines(canvas, segments);
+    }
+    ensureShaders(tiles);
+    final float[] points = segments.getPoints();
+    final int size = segments.size();
+    for (int i = 0; i < size; i += 4) {
+      fill(canvas, points[i], points[i + 1], points[i + 2], points[i + 3]);
+    }
+    // Canvas has no batched rect call, one rect per segment.
+    return size / 4;
+  }
+
+  @Override int drawEach(Canvas canvas, SegmentBuffer segments) {
+    if (obtainTiles() == null) {
+      return mFallback.drawEach(canvas, segments);
+    }
+    // Every segment is filled on its own anyway.
+    return drawLines(canvas, segments);
+  }
+
+  /**
+   * Point paint shaders at tiles, once per load.
+   */
+  private void ensureShaders(Tiles tiles) {
+    if (mShaderTiles == tiles) {
+      return;
+    }
+    mShaderTiles = tiles;
+    // Repeated along the line, edge pixels of a full thickness tile cover the rest across.
+    mHorizontalPaint.setShader(new BitmapShader(tiles.mHorizontal, Shader.TileMode.REPEAT,
+        Shader.TileMode.CLAMP));
+    mVerticalPaint.setShader(new BitmapShader(tiles.mVertical, Shader.TileMode.CLAMP,
+        Shader.TileMode.REPEAT));
+  }
+
+  /**
+   * Fill a line centered on its coordinates with tiles starting at its start.
+   */
+  private void fill(Canvas canvas, float startX, float startY, float stopX, float stopY) {
+    final float half = mThickness / 2;
+    final float scale = mThickness / mDashThickness;
+    final Matrix matrix = mTileMatrix;
+    if (startY == stopY) {
+      final float left = Math.min(startX, stopX);
+      final float top = startY - half;
+      matrix.setScale(1, scale);
+      matrix.postTranslate(left - mPhase, top);
+      mHorizontalPaint.getShader().setLocalMatrix(matrix);
+      canvas.drawRect(left, top, Math.max(startX, stopX), startY + half, mHorizontalPaint);
+    } else {
+      final float left = startX - half;
+      final float top = Math.min(startY, stopY);
+      matrix.setScale(scale, 1);
+      matrix.postTranslate(left, top - mPhase);
+      mVerticalPaint.getShader().setLocalMatrix(matrix);
+      canvas.drawRect(left, top, startX + half, Math.max(startY, stopY), mVerticalPaint);
+    }
+  }
+
+  /**
+   * Horizontal and vertical one period dash tiles, immutable once rendered.
+   */
+  private static final class Tiles {
+
+    // Tile repeated along x, its height is the dash thickness.
+    final Bitmap mHorizontal;
+    // Tile repeated along y.
+    final Bitmap mVertical;
+
+    Tiles(int dashGap, int dashLength, int dashThickness) {
+      final int period = dashLength + dashGap;
+      mHorizontal = ShaderRenderer.createTile(period, dashThickness, dashLength, dashThickness);
+      mVertical = ShaderRenderer.createTile(dashThickness, period, dashThickness, dashLength);
+    }
+  }
+}
@@ -18,47 +18,88 @@ package com.zac4j.decor;
 
 import android.content.Context;
 import android.graphics.Canvas;
-import android.graphics.DashPathEffect;
-import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Trace;
 import android.support.annotation.ColorInt;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import android.widget.LinearLayout;
+import com.zac4j.decor.geometry.ListGeometry;
+import com.zac4j.decor.geometry.SegmentCuller;
 
 /**
  * Dash divider for linear layout manager
  * Created by Zaccc on 2017/8/15.
  */
 
-public class DashDivider extends RecyclerView.ItemDecoration {
+public class DashDivider extends RecyclerView.ItemDecoration implements DecorMemory.Trimmable {
+
+  private static final String TRACE_SECTION = "DashDivider#onDraw";
 
   public static final int HORIZONTAL = LinearLayout.HORIZONTAL;
   public static final int VERTICAL = LinearLayout.VERTICAL;
 
-  private Paint mPaint;
+  // Dash divider render backends by style id, style 0 is the default look.
+  private final DashStyleTable mStyles;
+  // Maps adapter positions to style ids, null draws all items in the default style.
+  private StyleResolver mStyleResolver;
 
   /**
    * Current orientation. Either {@link #HORIZONTAL} or {@link #VERTICAL}.
    */
   private int mOrientation;
 
+  /**
+   * Whether collect segments and draw them with one {@link Canvas#drawLines} call per frame,
+   * instead of one {@link Canvas#drawLine} call per child.
+   */
+  private boolean mBatchDraw;
+  // Culls segments out of canvas clip bounds.
+  private final SegmentCuller mCuller = new SegmentCuller();
+  private final ListGeometry mGeometry = new ListGeometry(mCuller);
+  private final Rect mClipBounds = new Rect();
+  /**
+   * Whether record dividers once per layout pass and replay them with a translation on scroll
+   * only frames.
+   */
+  private boolean mCacheDisplayList;
+  // Bumped whenever recorded dividers are out of date.
+  private int mDisplayListKey;
+  // Recorded dividers, one per parent.
+  private final ParentStateTable<DisplayListCache> mDisplayLists =
+      new ParentStateTable<>(new ParentStateTable.Factory<DisplayListCache>() {
+        @Override public DisplayListCache create() {
+          return new DisplayListCache();
+        }
+      });
+  /**
+   * Whether reserve divider thickness after each item through {@link #getItemOffsets}, dividers
+   * are then drawn into the reserved gutters instead of over item content.
+   */
+  private boolean mReserveSpace;
+  // Draw metrics, null unless enabled.
+  private DrawMetrics mMetrics;
+
   /**
    * Creates a divider {@link RecyclerView.ItemDecoration} that can be used with a
    * {@link LinearLayoutManager}.
    *
    * @param orientation Divider orientation. Should be {@link #HORIZONTAL} or {@link #VERTICAL}.
    */
-  private DashDivider(int dashGap, int dashLength, int dashThickness, int color, int orientation) {
+  private DashDivider(DashRenderer[] renderers, StyleResolver styleResolver, int orientation,
+      boolean batchDraw, boolean cacheDisplayList, boolean reserveSpace) {
 
-    mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-    mPaint.setColor(color);
-    mPaint.setStyle(Paint.Style.STROKE);
-    mPaint.setStrokeWidth(dashThickness);
-    mPaint.setPathEffect(new DashPathEffect(new float[] { dashLength, dashGap }, 0));
+    mStyles = new DashStyleTable(renderers);
+    mStyleResolver = styleResolver;
+    mGeometry.setReserveSpace(reserveSpace);
 
     setOrientation(orientation);
+    mBatchDraw = batchDraw;
+    mCacheDisplayList = cacheDisplayList;
+    mReserveSpace = reserveSpace;
+    DecorMemory.register(this);
   }
 
   /**
@@ -73,49 +114,270 @@ public class DashDivider extends RecyclerView.ItemDecoration {
           "Invalid orientation. It should be either HORIZONTAL or VERTICAL");
     }
     mOrientation = orientation;
+    mGeometry.setOrientation(
+        orientation == VERTICAL ? ListGeometry.VERTICAL : ListGeometry.HORIZONTAL);
+    invalidateDisplayLists();
   }
 
-  @Override public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
-    if (parent.getLayoutManager() == null) {
+  /**
+   * Set resolver of per item divider styles, the change takes effect on next frame.
+   *
+   * @param styleResolver maps adapter positions to style ids, null for the default style only.
+   */
+  public void setStyleResolver(StyleResolver styleResolver) {
+    mStyleResolver = styleResolver;
+    invalidateDisplayLists();
+  }
+
+  /**
+   * Set dash color of the default style. Like all animatable properties it only updates paint
+   * state, call {@link RecyclerView#invalidate()} to redraw, no layout pass is needed.
+   */
+  public void setColor(@ColorInt int color) {
+    setColor(0, color);
+  }
+
+  /**
+   * Set dash color of a style.
+   *
+   * @param style style id registered through {@link Builder#style}, 0 for the default style.
+   * Ids not registered follow the default style and are rejected.
+   */
+  public void setColor(int style, @ColorInt int color) {
+    mutateStyle(style).setColor(color);
+  }
+
+  /**
+   * Set dash alpha of the default style, from 0 to 255.
+   */
+  public void setAlpha(int alpha) {
+    setAlpha(0, alpha);
+  }
+
+  public void setAlpha(int style, int alpha) {
+    if (alpha < 0 || alpha > 255) {
+      throw new IllegalArgumentException("Alpha must be between 0 and 255.");
+    }
+    mutateStyle(style).setAlpha(alpha);
+  }
+
+  /**
+   * Shift dashes of the default style backward along lines, e.g. animate it for a marching ants
+   * effect. Phase is applied in whole pixels and wraps at dash period.
+   */
+  public void setDashPhase(float phase) {
+    setDashPhase(0, phase);
+  }
+
+  public void setDashPhase(int style, float phase) {
+    mutateStyle(style).setPhase(phase);
+  }
+
+  /**
+   * Set line thickness of the default style in pixels. Reserved space keeps its size until
+   * items are laid out again.
+   */
+  public void setDashThickness(float thickness) {
+    setDashThickness(0, thickness);
+  }
+
+  public void setDashThickness(int style, float thickness) {
+    if (thickness <= 0) {
+      throw new IllegalArgumentException("Dash thickness must be greater than 0.");
+    }
+    mutateStyle(style).setThickness(thickness);
+  }
+
+  /**
+   * @return private renderer of style, recorded dividers are dropped as paint state changes.
+   */
+  private DashRenderer mutateStyle(int style) {
+    if (style < 0 || style >= mStyles.getStyleCount()) {
+      throw new IllegalArgumentException("Illegal style id: " + style);
+    }
+    invalidateDisplayLists();
+    return mStyles.mutate(style);
+  }
+
+  /**
+   * Switch between batch draw and per line draw, the change takes effect on next frame.
+   *
+   * @param batchDraw true to draw all segments with one {@link Canvas#drawLines} call.
+   */
+  public void setBatchDrawEnabled(boolean batchDraw) {
+    mBatchDraw = batchDraw;
+    invalidateDisplayLists();
+  }
+
+  public boolean isBatchDrawEnabled() {
+    return mBatchDraw;
+  }
+
+  /**
+   * Switch display list caching, recorded dividers are replayed with a translation while the
+   * list only scrolls.
+   *
+   * @param cacheDisplayList true to cache divider drawing across scroll only frames.
+   */
+  public void setDisplayListCacheEnabled(boolean cacheDisplayList) {
+    mCacheDisplayList = cacheDisplayList;
+    invalidateDisplayLists();
+  }
+
+  public boolean isDisplayListCacheEnabled() {
+    return mCacheDisplayList;
+  }
+
+  /**
+   * @return number of divider segments skipped for being out of canvas clip bounds.
+   */
+  public long getCulledSegmentCount() {
+    return mCuller.getCulledCount();
+  }
+
+  /**
+   * @return number of divider segments shortened to canvas clip bounds.
+   */
+  public long getTrimmedSegmentCount() {
+    return mCuller.getTrimmedCount();
+  }
+
+  /**
+   * Switch draw metrics collection, metrics are dropped when disabled.
+   */
+  public void setMetricsEnabled(boolean enabled) {
+    if (!enabled) {
+      mMetrics = null;
+    } else if (mMetrics == null) {
+      mMetrics = new DrawMetrics();
+    }
+  }
+
+  /**
+   * @return draw metrics of this decoration, or null if metrics are disabled.
+   */
+  public DrawMetrics getMetrics() {
+    return mMetrics;
+  }
+
+  /**
+   * Release recorded dividers of all parents on memory pressure, see {@link DecorMemory}.
+   */
+  @Override public void trimMemory(int level) {
+    mDisplayLists.trimMemory(level);
+    if (DecorMemory.releasesAll(level)) {
+      DecorMemory.addReleasedCacheBytes(mStyles.release());
+    }
+  }
+
+  @Override public void getItemOffsets(Rect outRect, View view, RecyclerView parent,
+      RecyclerView.State state) {
+    if (!mReserveSpace) {
+      outRect.set(0, 0, 0, 0);
       return;
     }
+    final int style = resolveStyle(parent.getChildAdapterPosition(view));
+    final int thickness = (int) Math.ceil(mStyles.getRenderer(style).getThickness());
     if (mOrientation == VERTICAL) {
-      drawVertical(c, parent);
+      outRect.set(0, 0, 0, thickness);
     } else {
-      drawHorizontal(c, parent);
+      outRect.set(0, 0, thickness, 0);
     }
   }
 
-  private void drawVertical(Canvas canvas, RecyclerView parent) {
-    canvas.save();
-    final int childCount = parent.getChildCount();
-    for (int i = 0; i < childCount; i++) {
-      final View child = parent.getChildAt(i);
-      RecyclerView.LayoutParams params = (RecyclerView.LayoutParams) child.getLayoutParams();
-      final int startX = child.getLeft() - params.leftMargin;
-      final int stopX = child.getRight() + params.rightMargin;
-      final int y = child.getBottom() + params.bottomMargin;
-
-      canvas.drawLine(startX, y, stopX, y, mPaint);
+  @Override public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
+    if (parent.getLayoutManager() == null) {
+      return;
+    }
+    Trace.beginSection(TRACE_SECTION);
+    try {
+      final DrawMetrics metrics = mMetrics;
+      if (metrics != null) {
+        metrics.beginFrame(mCuller);
+      }
+      if (mCacheDisplayList && DisplayListCache.isSupported(c)) {
+        final DisplayListCache displayListCache = mDisplayLists.get(parent);
+        // Recordings drawn by a fallback are dropped once the renderers are loaded.
+        final int key = mDisplayListKey << 1 | (mStyles.isLoaded() ? 1 : 0);
+        if (!displayListCache.canReplay(parent, key)) {
+          // Recorded dividers are replayed at other scroll offsets, nothing can be culled.
+          drawDividers(displayListCache.beginRecording(parent), parent, false);
+          displayListCache.endRecording();
+        } else if (metrics != null) {
+          metrics.addReplay();
+        }
+        displayListCache.draw(c);
+      } else {
+        drawDividers(c, parent, true);
+      }
+      mStyles.invalidateWhenLoaded(parent);
+      if (metrics != null) {
+        metrics.endFrame(mCuller);
+      }
+    } finally {
+      Trace.endSection();
     }
-    canvas.restore();
   }
 
-  private void drawHorizontal(Canvas canvas, RecyclerView parent) {
-    canvas.save();
-
+  private void drawDividers(Canvas c, RecyclerView parent, boolean cull) {
+    final boolean clip = cull && c.getClipBounds(mClipBounds);
+    if (!clip) {
+      mCuller.disable();
+    }
+    mStyles.reset();
+    final StyleResolver resolver = mStyleResolver;
+    // Segments are sorted into per paint buckets, drawn once each after all items are visited.
+    int currentStyle = -1;
     final int childCount = parent.getChildCount();
     for (int i = 0; i < childCount; i++) {
       final View child = parent.getChildAt(i);
-
       final RecyclerView.LayoutParams params = (RecyclerView.LayoutParams) child.getLayoutParams();
-      final int rightX = child.getRight() + params.rightMargin;
-      final int startY = child.getTop() - params.topMargin;
-      final int stopY = child.getBottom() + params.bottomMargin;
+      final int style = resolver == null ? 0 : resolveStyle(parent.getChildAdapterPosition(child));
+      if (style != currentStyle) {
+        // Culler and geometry follow the thickness and dash period of the item style.
+        currentStyle = style;
+        final DashRenderer renderer = mStyles.getRenderer(style);
+        if (clip) {
+          mCuller.begin(mClipBounds.left, mClipBounds.top, mClipBounds.right,
+              mClipBounds.bottom, renderer.getThickness(), renderer.getPeriod());
+        }
+        mGeometry.setThickness(renderer.getThickness());
+      }
+      mGeometry.addItem(mStyles.getSegments(style), child.getLeft(), child.getTop(),
+          child.getRight(), child.getBottom(), params.leftMargin, params.topMargin,
+          params.rightMargin, params.bottomMargin);
+    }
+    final int drawCalls = mStyles.draw(c, mBatchDraw);
+    if (mMetrics != null) {
+      mMetrics.addSegments(mStyles.segmentCount());
+      mMetrics.addDrawCalls(drawCalls);
+    }
+  }
 
-      canvas.drawLine(rightX, startY, rightX, stopY, mPaint);
+  private void invalidateDisplayLists() {
+    // Recordings of all parents are dropped lazily on their next frame.
+    mDisplayListKey++;
+  }
+
+  private int resolveStyle(int position) {
+    if (mStyleResolver == null || position == RecyclerView.NO_POSITION) {
+      return 0;
     }
-    canvas.restore();
+    return mStyles.resolve(mStyleResolver.getStyle(position));
+  }
+
+  /**
+   * Resolves divider style of items, called for each visible item every frame so it must be
+   * cheap and must not allocate, e.g. a lookup into adapter data.
+   */
+  public interface StyleResolver {
+
+    /**
+     * @param position adapter position of the item.
+     * @return id of a style registered through {@link Builder#style}, 0 for the default style.
+     * Unknown ids fall back to the default style.
+     */
+    int getStyle(int position);
   }
 
   public static Builder with(@NonNull Context context) {
@@ -132,6 +394,14 @@ public class DashDivider extends RecyclerView.ItemDecoration {
     private int dashThickness;
     private int color;
     private int orientation = VERTICAL;
+    private boolean batchDraw;
+    private boolean cacheDisplayList;
+    private boolean reserveSpace;
+    private int renderer = DashRenderer.PATH_EFFECT;
+    // Dash gap, length, thickness and color of each extra style.
+    private final int[][] styles = new int[DashStyleTable.MAX_STYLES][];
+    private int styleCount = 1;
+    private StyleResolver styleResolver;
 
     public Builder(Context context) {
       this.context = context;
@@ -174,6 +444,61 @@ public class DashDivider extends RecyclerView.ItemDecoration {
       return this;
     }
 
+    public Builder batchDraw(boolean batchDraw) {
+      this.batchDraw = batchDraw;
+      return this;
+    }
+
+    /**
+     * @param renderer {@link DashRenderer#PATH_EFFECT}, {@link DashRenderer#SHADER},
+     * {@link DashRenderer#BITMAP} or {@link DashRenderer#AUTO}
+     */
+    public Builder renderer(int renderer) {
+      if (!DashRenderer.isValid(renderer)) {
+        throw new IllegalArgumentException("Illegal dash renderer!");
+      }
+      this.renderer = renderer;
+      return this;
+    }
+
+    public Builder cacheDisplayList(boolean cacheDisplayList) {
+      this.cacheDisplayList = cacheDisplayList;
+      return this;
+    }
+
+    /**
+     * Reserve divider thickness after each item, so dividers never paint over item content.
+     */
+    public Builder reserveSpace(boolean reserveSpace) {
+      this.reserveSpace = reserveSpace;
+      return this;
+    }
+
+    /**
+     * Register an extra divider style, items are mapped to styles by {@link #styleResolver}.
+     *
+     * @param id style id from 1 to 15, id 0 is the default style set up by this builder.
+     */
+    public Builder style(int id, int dashGap, int dashLength, int dashThickness,
+        @ColorInt int color) {
+      if (id <= 0 || id >= DashStyleTable.MAX_STYLES) {
+        throw new IllegalArgumentException(
+            "Style id must be between 1 and " + (DashStyleTable.MAX_STYLES - 1) + ".");
+      }
+      if (dashGap <= 0 || dashLength <= 0 || dashThickness <= 0) {
+        throw new IllegalArgumentException(
+            "Dash gap, length and thickness must be greater than 0.");
+      }
+      this.styles[id] = new int[] { dashGap, dashLength, dashThickness, color };
+      this.styleCount = Math.max(styleCount, id + 1);
+      return this;
+    }
+
+    public Builder styleResolver(StyleResolver styleResolver) {
+      this.styleResolver = styleResolver;
+      return this;
+    }
+
     public DashDivider build() {
       if (dashGap <= 0) {
         throw new IllegalArgumentException("Dash gap must be greater than 0.");
@@ -187,7 +512,27 @@ public class DashDivider extends RecyclerView.ItemDecoration {
       if (orientation != HORIZONTAL && orientation != VERTICAL) {
         throw new IllegalArgumentException("Illegal dashed divider orientation!");
       }
-      return new DashDivider(dashGap, dashLength, dashThickness, color, orientation);
+      final int backend = renderer == DashRenderer.AUTO
+          ? RendererCalibration.select(context, dashGap, dashLength, dashThickness, color)
+          : renderer;
+      final DashRenderer[] renderers = new DashRenderer[styleCount];
+      renderers[0] =
+          DashStyleCache.obtain(dashGap, dashLength, dashThickness, color, backend)
+              .getDashRenderer();
+      for (int i = 1; i < styleCount; i++) {
+        final int[] style = styles[i];
+        if (style != null) {
+          final int styleBackend = renderer == DashRenderer.AUTO
+              ? RendererCalibration.select(context, style[0], style[1], style[2], style[3])
+              : renderer;
+          // Styles with equal look share one cached renderer and so one draw bucket.
+          renderers[i] = DashStyleCache.obtain(style[0], style[1], style[2], style[3],
+              styleBackend).getDashRenderer();
+        }
+      }
+      DecorMemory.install(context);
+      return new DashDivider(renderers, styleResolver, orientation, batchDraw, cacheDisplayList,
+          reserveSpace);
     }
   }
 }
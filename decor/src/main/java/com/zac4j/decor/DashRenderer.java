@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Canvas;
+import android.view.View;
+import com.zac4j.decor.geometry.SegmentBuffer;
+
+/**
+ * Dash divider render backend, turns divider segments into canvas draw operations.
+ * Select one through {@code DashDivider.Builder#renderer(int)} or
+ * {@code GridDashDivider.Builder#renderer(int)}, or let {@link #AUTO} pick one per device.
+ */
+
+public abstract class DashRenderer {
+
+  /**
+   * Stroke lines with a {@link android.graphics.DashPathEffect} paint.
+   */
+  public static final int PATH_EFFECT = 0;
+  /**
+   * Fill rects with a repeating {@link android.graphics.BitmapShader} over a pre-rendered
+   * dash period tile.
+   */
+  public static final int SHADER = 1;
+  /**
+   * Fill each line with pre-rendered dash period tiles starting at the line start, rendered in
+   * background on first draw.
+   */
+  public static final int BITMAP = 2;
+  /**
+   * Pick the fastest backend of the device for each dash style, measured once in background and
+   * persisted. Decorations built before a style is measured use {@link #PATH_EFFECT}. Measured
+   * on a software canvas, so it is a heuristic for hardware accelerated windows.
+   */
+  public static final int AUTO = -1;
+
+  DashRenderer() {
+  }
+
+  static boolean isValid(int renderer) {
+    return renderer == PATH_EFFECT || renderer == SHADER || renderer == BITMAP
+        || renderer == AUTO;
+  }
+
+  static DashRenderer create(int renderer, int dashGap, int dashLength, int dashThickness,
+      int color) {
+    switch (renderer) {
+      case PATH_EFFECT:
+        return new PathEffectRenderer(dashGap, dashLength, dashThickness, color);
+      case SHADER:
+        return new ShaderRenderer(dashGap, dashLength, dashThickness, color);
+      case BITMAP:
+        return new BitmapRenderer(dashGap, dashLength, dashThickness, color);
+      default:
+        // AUTO must be resolved through RendererCalibration first.
+        throw new IllegalArgumentException("Illegal dash renderer: " + renderer);
+    }
+  }
+
+  /**
+   * Wrap a dash phase into [0, period) whole pixels, so every phase maps onto preallocated state.
+   */
+  static int wrapPhase(float phase, int period) {
+    final int wrapped = Math.round(phase) % period;
+    return wrapped < 0 ? wrapped + period : wrapped;
+  }
+
+  /**
+   * Build lazily created resources now on the calling thread, e.g. before timing the renderer.
+   */
+  void prepare() {
+  }
+
+  /**
+   * @return false while lines are drawn by a fallback because resources are still being built.
+   */
+  boolean isLoaded() {
+    return true;
+  }
+
+  /**
+   * Invalidate view once resources are built if lines are drawn by a fallback, so they are drawn
+   * again by the renderer itself. Called after each draw pass into view.
+   */
+  void invalidateWhenLoaded(View view) {
+  }
+
+  /**
+   * @return renderer of same look and state that can be mutated, renderers obtained through
+   * {@link DashStyleCache} are shared by decorations and must stay unchanged.
+   */
+  abstract DashRenderer copy();
+
+  /**
+   * @return dash color, alpha included.
+   */
+  abstract int getColor();
+
+  /**
+   * Set dash color, alpha included.
+   */
+  abstract void setColor(int color);
+
+  /**
+   * Set dash alpha, keeps color.
+   */
+  abstract void setAlpha(int alpha);
+
+  /**
+   * Shift dashes backward along lines by phase pixels, wraps at dash period.
+   */
+  abstract void setPhase(float phase);
+
+  /**
+   * Set line thickness in pixels, dashes are scaled across the line.
+   */
+  abstract void setThickness(float thickness);
+
+  /**
+   * @return dash thickness in pixels.
+   */
+  abstract float getThickness();
+
+  /**
+   * @return dash period (length + gap) in pixels.
+   */
+  abstract float getPeriod();
+
+  /**
+   * Draw a single horizontal or vertical divider segment.
+   */
+  abstract void drawLine(Canvas canvas, float startX, float startY, float stopX, float stopY);
+
+  /**
+   * Draw all buffered divider segments with as few draw calls as the backend allows.
+   *
+   * @return number of canvas draw calls issued.
+   */
+  abstract int drawLines(Canvas canvas, SegmentBuffer segments);
+
+  /**
+   * Draw buffered divider segments one draw call per segment.
+   *
+   * @return number of canvas draw calls issued.
+   */
+  int drawEach(Canvas canvas, SegmentBuffer segments) {
+    final float[] points = segments.getPoints();
+    final int size = segments.size();
+    for (int i = 0; i < size; i += 4) {
+      drawLine(canvas, points[i], points[i + 1], points[i + 2], points[i + 3]);
+    }
+    return size >> 2;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+/**
+ * Immutable dash style: gap, length, thickness, color and render backend.
+ * Styles are shared across decorations through {@link DashStyleCache}, so the render backend
+ * (paints, path effects, shader tiles) is built only once per distinct style.
+ */
+
+public final class DashStyle {
+
+  private final int mDashGap;
+  private final int mDashLength;
+  private final int mDashThickness;
+  private final int mColor;
+  private final int mRenderer;
+
+  // Lazily created by cache on first miss, never changed afterwards.
+  private DashRenderer mDashRenderer;
+
+  DashStyle(int dashGap, int dashLength, int dashThickness, int color, int renderer) {
+    mDashGap = dashGap;
+    mDashLength = dashLength;
+    mDashThickness = dashThickness;
+    mColor = color;
+    mRenderer = renderer;
+  }
+
+  public int getDashGap() {
+    return mDashGap;
+  }
+
+  public int getDashLength() {
+    return mDashLength;
+  }
+
+  public int getDashThickness() {
+    return mDashThickness;
+  }
+
+  public int getColor() {
+    return mColor;
+  }
+
+  /**
+   * @return {@link DashRenderer#PATH_EFFECT}, {@link DashRenderer#SHADER} or
+   * {@link DashRenderer#BITMAP}
+   */
+  public int getRenderer() {
+    return mRenderer;
+  }
+
+  synchronized DashRenderer getDashRenderer() {
+    if (mDashRenderer == null) {
+      mDashRenderer = DashRenderer.create(mRenderer, mDashGap, mDashLength, mDashThickness, mColor);
+    }
+    return mDashRenderer;
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof DashStyle)) {
+      return false;
+    }
+    DashStyle that = (DashStyle) o;
+    return mDashGap == that.mDashGap
+        && mDashLength == that.mDashLength
+        && mDashThickness == that.mDashThickness
+        && mColor == that.mColor
+        && mRenderer == that.mRenderer;
+  }
+
+  @Override public int hashCode() {
+    int result = mDashGap;
+    result = 31 * result + mDashLength;
+    result = 31 * result + mDashThickness;
+    result = 31 * result + mColor;
+    result = 31 * result + mRenderer;
+    return result;
+  }
+
+  @Override public String toString() {
+    return "DashStyle{gap=" + mDashGap + ", length=" + mDashLength + ", thickness="
+        + mDashThickness + ", color=#" + Integer.toHexString(mColor) + ", renderer=" + mRenderer
+        + "}";
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.util.LruCache;
+
+/**
+ * Process-wide bounded LRU cache of {@link DashStyle}s, shared by all decoration builders.
+ * Identical decorations created across screens and nested lists reuse one render backend instead
+ * of building their own paints, path effects and dash tiles.
+ *
+ * Hit/miss counters are exposed to verify how much construction work the cache saves.
+ */
+
+public final class DashStyleCache {
+
+  // Max distinct dash styles kept alive.
+  private static final int MAX_STYLE_COUNT = 32;
+
+  private static final LruCache<DashStyle, DashStyle> sStyles =
+      new LruCache<DashStyle, DashStyle>(MAX_STYLE_COUNT) {
+        @Override protected DashStyle create(DashStyle key) {
+          // Build render backend once, the key itself becomes the cached style.
+          key.getDashRenderer();
+          return key;
+        }
+      };
+
+  private DashStyleCache() {
+    throw new AssertionError("No instances.");
+  }
+
+  /**
+   * Obtain a shared dash style, created and cached on first request.
+   */
+  static DashStyle obtain(int dashGap, int dashLength, int dashThickness, int color,
+      int renderer) {
+    return sStyles.get(new DashStyle(dashGap, dashLength, dashThickness, color, renderer));
+  }
+
+  /**
+   * @return number of style requests served from cache.
+   */
+  public static int hitCount() {
+    return sStyles.hitCount();
+  }
+
+  /**
+   * @return number of style requests that had to build a new render backend.
+   */
+  public static int missCount() {
+    return sStyles.missCount();
+  }
+
+  /**
+   * @return number of styles evicted to keep the cache bounded.
+   */
+  public static int evictionCount() {
+    return sStyles.evictionCount();
+  }
+
+  /**
+   * Drop all cached styles, decorations already built keep their own references.
+   */
+  public static void clear() {
+    sStyles.evictAll();
+  }
+}
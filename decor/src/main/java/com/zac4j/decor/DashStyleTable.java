@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Canvas;
+import android.view.View;
+import com.zac4j.decor.geometry.SegmentBuffer;
+
+/**
+ * Preallocated table of divider styles addressed by small int ids, style 0 is the default look.
+ *
+ * Segments are collected into one bucket per distinct {@link DashRenderer}, styles sharing a
+ * renderer share a bucket, so each distinct paint is drawn once per frame however the styles are
+ * interleaved across items. Styles are copied on first mutation, cached renderers are shared with
+ * other decorations.
+ */
+
+final class DashStyleTable {
+
+  // Max number of styles, ids run from 0 to MAX_STYLES - 1.
+  static final int MAX_STYLES = 16;
+
+  private final DashRenderer[] mRenderers;
+  // Whether renderer of style is a private copy that can be mutated.
+  private final boolean[] mOwned;
+  // Whether style is undefined and follows the default style.
+  private final boolean[] mUndefined;
+  // Bucket index of each style.
+  private final int[] mBuckets;
+  private final DashRenderer[] mBucketRenderers;
+  private final SegmentBuffer[] mBucketSegments;
+  private int mBucketCount;
+
+  /**
+   * @param renderers renderer of each style id, null entries fall back to the default style 0.
+   */
+  DashStyleTable(DashRenderer[] renderers) {
+    if (renderers.length == 0 || renderers.length > MAX_STYLES || renderers[0] == null) {
+      throw new IllegalArgumentException("Illegal divider style table!");
+    }
+    final int count = renderers.length;
+    mRenderers = new DashRenderer[count];
+    mOwned = new boolean[count];
+    mUndefined = new boolean[count];
+    mBuckets = new int[count];
+    mBucketRenderers = new DashRenderer[count];
+    mBucketSegments = new SegmentBuffer[count];
+    for (int i = 0; i < count; i++) {
+      mUndefined[i] = renderers[i] == null;
+      mRenderers[i] = renderers[i] != null ? renderers[i] : renderers[0];
+      mBucketSegments[i] = new SegmentBuffer();
+    }
+    assignBuckets();
+  }
+
+  /**
+   * Group styles by renderer, styles sharing a renderer share a bucket.
+   */
+  private void assignBuckets() {
+    int bucketCount = 0;
+    for (int i = 0; i < mRenderers.length; i++) {
+      final DashRenderer renderer = mRenderers[i];
+      int bucket = 0;
+      while (bucket < bucketCount && mBucketRenderers[bucket] != renderer) {
+        bucket++;
+      }
+      if (bucket == bucketCount) {
+        mBucketRenderers[bucket] = renderer;
+        bucketCount++;
+      }
+      mBuckets[i] = bucket;
+    }
+    mBucketCount = bucketCount;
+  }
+
+  /**
+   * @return renderer of style that can be mutated, copied from the shared one on first call.
+   * @throws IllegalArgumentException if style is undefined, it follows the default style and
+   * is changed through style 0 only.
+   */
+  DashRenderer mutate(int style) {
+    if (mUndefined[style]) {
+      throw new IllegalArgumentException("Undefined style id: " + style);
+    }
+    if (!mOwned[style]) {
+      mRenderers[style] = mRenderers[style].copy();
+      mOwned[style] = true;
+      if (style == 0) {
+        for (int i = 1; i < mRenderers.length; i++) {
+          if (mUndefined[i]) {
+            mRenderers[i] = mRenderers[0];
+          }
+        }
+      }
+      assignBuckets();
+    }
+    return mRenderers[style];
+  }
+
+  int getStyleCount() {
+    return mRenderers.length;
+  }
+
+  /**
+   * @return style id clamped to the table, undefined ids fall back to the default style 0.
+   */
+  int resolve(int style) {
+    return style >= 0 && style < mRenderers.length ? style : 0;
+  }
+
+  DashRenderer getRenderer(int style) {
+    return mRenderers[style];
+  }
+
+  SegmentBuffer getSegments(int style) {
+    return mBucketSegments[mBuckets[style]];
+  }
+
+  void reset() {
+    for (int i = 0; i < mBucketCount; i++) {
+      mBucketSegments[i].reset();
+    }
+  }
+
+  /**
+   * Shrink segment buffers of all buckets to initial capacity.
+   *
+   * @return number of bytes released.
+   */
+  int release() {
+    int released = 0;
+    for (SegmentBuffer segments : mBucketSegments) {
+      released += segments.release();
+    }
+    return released;
+  }
+
+  int segmentCount() {
+    int count = 0;
+    for (int i = 0; i < mBucketCount; i++) {
+      count += mBucketSegments[i].segmentCount();
+    }
+    return count;
+  }
+
+  /**
+   * @return false while any bucket renderer draws by a fallback, see
+   * {@link DashRenderer#isLoaded()}.
+   */
+  boolean isLoaded() {
+    for (int i = 0; i < mBucketCount; i++) {
+      if (!mBucketRenderers[i].isLoaded()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  void invalidateWhenLoaded(View view) {
+    for (int i = 0; i < mBucketCount; i++) {
+      mBucketRenderers[i].invalidateWhenLoaded(view);
+    }
+  }
+
+  /**
+   * Draw all buckets, one paint at a time.
+   *
+   * @param batchDraw true to draw each bucket with one {@link Canvas#drawLines} call.
+   * @return number of draw calls issued.
+   */
+  int draw(Canvas canvas, boolean batchDraw) {
+    int drawCalls = 0;
+    for (int i = 0; i < mBucketCount; i++) {
+      final DashRenderer renderer = mBucketRenderers[i];
+      final SegmentBuffer segments = mBucketSegments[i];
+      drawCalls += batchDraw
+          ? renderer.drawLines(canvas, segments)
+          : renderer.drawEach(canvas, segments);
+    }
+    return drawCalls;
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Releases divider caches on memory pressure through {@link ComponentCallbacks2}.
+ *
+ * Renderers and decorations register themselves once they hold releasable memory, and are
+ * trimmed by level: {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW} and above drops recorded
+ * display lists and cached segments, {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_CRITICAL}
+ * and {@link ComponentCallbacks2#TRIM_MEMORY_BACKGROUND} and above also drop dash tiles and
+ * item descriptors. {@link ComponentCallbacks2#TRIM_MEMORY_UI_HIDDEN} only drops what
+ * {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW} does, the UI is likely shown again soon.
+ * Everything released is rebuilt lazily on next draw.
+ *
+ * Builders install the callbacks on the application context, so nothing has to be wired up. Apps
+ * that dispatch trim events themselves can call {@link #trimMemory(int)}.
+ */
+
+public final class DecorMemory {
+
+  /**
+   * Component holding memory that can be released and rebuilt on demand.
+   */
+  interface Trimmable {
+
+    /**
+     * Release memory according to trim level, record released amounts through
+     * {@link #addReleasedBitmapBytes}, {@link #addReleasedCacheBytes} and
+     * {@link #addReleasedDisplayLists}.
+     */
+    void trimMemory(int level);
+  }
+
+  // Registered components, weakly held so registering never keeps them alive.
+  private static final WeakHashMap<Trimmable, Boolean> sTrimmables = new WeakHashMap<>();
+  private static final Callbacks sCallbacks = new Callbacks();
+  private static boolean sInstalled;
+
+  private static long sReleasedBitmapBytes;
+  private static long sReleasedCacheBytes;
+  private static int sReleasedDisplayLists;
+  private static int sTrimCount;
+
+  private DecorMemory() {
+    throw new AssertionError("No instances.");
+  }
+
+  /**
+   * Register trim callbacks on the application context, once per process.
+   */
+  static synchronized void install(Context context) {
+    if (sInstalled) {
+      return;
+    }
+    sInstalled = true;
+    context.getApplicationContext().registerComponentCallbacks(sCallbacks);
+  }
+
+  /**
+   * Register a component to be trimmed on memory pressure, registering twice is a no-op.
+   */
+  static synchronized void register(Trimmable trimmable) {
+    sTrimmables.put(trimmable, Boolean.TRUE);
+  }
+
+  /**
+   * @return true if level asks to drop caches rebuilt from layout alone.
+   */
+  static boolean releasesCaches(int level) {
+    return level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+  }
+
+  /**
+   * @return true if level asks to drop everything, including rendered dash bitmaps.
+   */
+  static boolean releasesAll(int level) {
+    // UI_HIDDEN lies between the running and background levels, yet asks for less.
+    return level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+        || level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+  }
+
+  /**
+   * Release divider memory according to trim level, must be called on the UI thread.
+   *
+   * @param level one of the {@code ComponentCallbacks2.TRIM_MEMORY_*} levels.
+   */
+  public static void trimMemory(int level) {
+    final ArrayList<Trimmable> trimmables;
+    synchronized (DecorMemory.class) {
+      sTrimCount++;
+      // Snapshot, trimming may register components again.
+      trimmables = new ArrayList<>(sTrimmables.size());
+      for (Map.Entry<Trimmable, Boolean> entry : sTrimmables.entrySet()) {
+        final Trimmable trimmable = entry.getKey();
+        if (trimmable != null) {
+          trimmables.add(trimmable);
+        }
+      }
+    }
+    for (Trimmable trimmable : trimmables) {
+      trimmable.trimMemory(level);
+    }
+    if (releasesAll(level)) {
+      DashStyleCache.clear();
+    }
+  }
+
+  static synchronized void addReleasedBitmapBytes(long bytes) {
+    sReleasedBitmapBytes += bytes;
+  }
+
+  static synchronized void addReleasedCacheBytes(long bytes) {
+    sReleasedCacheBytes += bytes;
+  }
+
+  static synchronized void addReleasedDisplayLists(int count) {
+    sReleasedDisplayLists += count;
+  }
+
+  /**
+   * @return bytes of dash tiles released so far, bitmap tiles shared by copies of a mutated style
+   * are counted once per copy.
+   */
+  public static synchronized long getReleasedBitmapBytes() {
+    return sReleasedBitmapBytes;
+  }
+
+  /**
+   * @return bytes of cached segments and item descriptors released so far.
+   */
+  public static synchronized long getReleasedCacheBytes() {
+    return sReleasedCacheBytes;
+  }
+
+  /**
+   * @return number of recorded display lists released so far, their native size is not exposed.
+   */
+  public static synchronized int getReleasedDisplayListCount() {
+    return sReleasedDisplayLists;
+  }
+
+  /**
+   * @return number of trim events handled so far.
+   */
+  public static synchronized int getTrimCount() {
+    return sTrimCount;
+  }
+
+  /**
+   * @return number of live components registered for trimming.
+   */
+  static synchronized int getRegisteredCount() {
+    return sTrimmables.size();
+  }
+
+  private static final class Callbacks implements ComponentCallbacks2 {
+
+    @Override public void onTrimMemory(int level) {
+      trimMemory(level);
+    }
+
+    @Override public void onLowMemory() {
+      trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override public void onConfigurationChanged(Configuration newConfig) {
+    }
+  }
+}
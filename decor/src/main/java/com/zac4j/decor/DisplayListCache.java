@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.os.Build;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import java.lang.ref.WeakReference;
+
+/**
+ * Divider display list recorded once per layout pass and replayed with a translation on scroll
+ * only frames.
+ *
+ * A scroll only frame keeps the same attached children, adapter, layout manager and parent size,
+ * and moves every child by the same distance, translation included. Anything else, e.g. a child
+ * dragged on its own, adapter notify events and style changes re-record the list.
+ *
+ * {@link Picture} is used as display list: compile SDK predates the public RenderNode API, and
+ * picture playback is supported by hardware canvas since {@link Build.VERSION_CODES#M}.
+ */
+
+final class DisplayListCache extends RecyclerView.AdapterDataObserver
+    implements ParentStateTable.State {
+
+  // Extra recording room around children for strokes centered on item edges.
+  private static final int RECORD_PADDING = 32;
+
+  // Created on first recording, dropped on memory pressure.
+  private Picture mPicture;
+  private boolean mValid;
+  // Key of decoration state the recording was made from, e.g. paint state.
+  private int mKey;
+
+  // Weakly held, both reference the parent that the cache is kept for.
+  private WeakReference<RecyclerView.Adapter> mAdapter;
+  private WeakReference<RecyclerView.LayoutManager> mLayoutManager;
+  // Layout snapshot at record time.
+  private int mWidth;
+  private int mHeight;
+  private int mChildCount;
+  // Layout position and translated origin of each child, grown on recording only.
+  private int[] mPositions = new int[0];
+  private float[] mChildX = new float[0];
+  private float[] mChildY = new float[0];
+  // Parent coordinates of recording origin, children may lay out of parent bounds.
+  private int mOriginX;
+  private int mOriginY;
+  // Replay translation of current frame.
+  private float mDx;
+  private float mDy;
+
+  /**
+   * @return true if recorded display list can be drawn into canvas.
+   */
+  static boolean isSupported(Canvas canvas) {
+    return !canvas.isHardwareAccelerated() || Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+  }
+
+  void invalidate() {
+    mValid = false;
+  }
+
+  @Override public void trimMemory(int level) {
+    if (DecorMemory.releasesCaches(level) && trim()) {
+      DecorMemory.addReleasedDisplayLists(1);
+    }
+  }
+
+  /**
+   * Stop observing the adapter and drop the recording.
+   */
+  @Override public void release() {
+    final RecyclerView.Adapter adapter = mAdapter != null ? mAdapter.get() : null;
+    if (adapter != null) {
+      adapter.unregisterAdapterDataObserver(this);
+    }
+    mAdapter = null;
+    mLayoutManager = null;
+    mPicture = null;
+    mPositions = new int[0];
+    mChildX = new float[0];
+    mChildY = new float[0];
+    mValid = false;
+  }
+
+  /**
+   * Drop the recording to free its memory, it is recorded again on next frame.
+   *
+   * @return true if a recording was dropped.
+   */
+  boolean trim() {
+    mValid = false;
+    if (mPicture == null) {
+      return false;
+    }
+    mPicture = null;
+    return true;
+  }
+
+  /**
+   * Check whether the recorded display list still matches parent layout, up to a translation.
+   *
+   * @param key key of decoration state dividers are drawn from, a new key drops the recording.
+   */
+  boolean canReplay(RecyclerView parent, int key) {
+    if (key != mKey) {
+      mKey = key;
+      mValid = false;
+    }
+    final RecyclerView.Adapter adapter = parent.getAdapter();
+    final RecyclerView.Adapter observed = mAdapter != null ? mAdapter.get() : null;
+    if (adapter != observed) {
+      if (observed != null) {
+        observed.unregisterAdapterDataObserver(this);
+      }
+      if (adapter != null) {
+        adapter.registerAdapterDataObserver(this);
+      }
+      mAdapter = adapter != null ? new WeakReference<>(adapter) : null;
+      mValid = false;
+    }
+    final int childCount = parent.getChildCount();
+    if (!mValid
+        || mPicture == null
+        || childCount == 0
+        || parent.isAnimating()
+        || mLayoutManager == null
+        || parent.getLayoutManager() != mLayoutManager.get()
+        || parent.getWidth() != mWidth
+        || parent.getHeight() != mHeight
+        || childCount != mChildCount) {
+      return false;
+    }
+    final View first = parent.getChildAt(0);
+    final float dx = first.getLeft() + first.getTranslationX() - mChildX[0];
+    final float dy = first.getTop() + first.getTranslationY() - mChildY[0];
+    for (int i = 0; i < childCount; i++) {
+      // Every child must move along, any of them may be dragged or translated on its own.
+      final View child = parent.getChildAt(i);
+      if (parent.getChildLayoutPosition(child) != mPositions[i]
+          || child.getLeft() + child.getTranslationX() - mChildX[i] != dx
+          || child.getTop() + child.getTranslationY() - mChildY[i] != dy) {
+        return false;
+      }
+    }
+    mDx = dx;
+    mDy = dy;
+    return true;
+  }
+
+  /**
+   * Start recording dividers of current parent layout.
+   *
+   * @return canvas to draw dividers into, in parent coordinates.
+   */
+  Canvas beginRecording(RecyclerView parent) {
+    final RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+    if (mLayoutManager == null || mLayoutManager.get() != layoutManager) {
+      mLayoutManager = new WeakReference<>(layoutManager);
+    }
+    mWidth = parent.getWidth();
+    mHeight = parent.getHeight();
+    mChildCount = parent.getChildCount();
+
+    if (mPositions.length < mChildCount) {
+      mPositions = new int[mChildCount];
+      mChildX = new float[mChildCount];
+      mChildY = new float[mChildCount];
+    }
+
+    // Record the union of parent and children bounds, so content scrolled in later is kept.
+    int left = 0;
+    int top = 0;
+    int right = mWidth;
+    int bottom = mHeight;
+    for (int i = 0; i < mChildCount; i++) {
+      final View child = parent.getChildAt(i);
+      left = Math.min(left, child.getLeft());
+      top = Math.min(top, child.getTop());
+      right = Math.max(right, child.getRight());
+      bottom = Math.max(bottom, child.getBottom());
+      mPositions[i] = parent.getChildLayoutPosition(child);
+      mChildX[i] = child.getLeft() + child.getTranslationX();
+      mChildY[i] = child.getTop() + child.getTranslationY();
+    }
+    mOriginX = left - RECORD_PADDING;
+    mOriginY = top - RECORD_PADDING;
+    mDx = 0;
+    mDy = 0;
+
+    if (mPicture == null) {
+      mPicture = new Picture();
+    }
+    Canvas canvas = mPicture.beginRecording(right + RECORD_PADDING - mOriginX,
+        bottom + RECORD_PADDING - mOriginY);
+    canvas.translate(-mOriginX, -mOriginY);
+    return canvas;
+  }
+
+  void endRecording() {
+    mPicture.endRecording();
+    mValid = true;
+  }
+
+  void draw(Canvas canvas) {
+    final int saveCount = canvas.save();
+    canvas.translate(mOriginX + mDx, mOriginY + mDy);
+    canvas.drawPicture(mPicture);
+    canvas.restoreToCount(saveCount);
+  }
+
+  @Override public void onChanged() {
+    mValid = false;
+  }
+
+  @Override public void onItemRangeChanged(int positionStart, int itemCount) {
+    mValid = false;
+  }
+
+  @Override public void onItemRangeInserted(int positionStart, int itemCount) {
+    mValid = false;
+  }
+
+  @Override public void onItemRangeRemoved(int positionStart, int itemCount) {
+    mValid = false;
+  }
+
+  @Override public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+    mValid = false;
+  }
+}
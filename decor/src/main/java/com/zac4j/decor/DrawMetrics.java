@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import com.zac4j.decor.geometry.SegmentCuller;
+import java.util.Arrays;
+
+/**
+ * Opt-in draw metrics of a divider decoration.
+ *
+ * Counts segments drawn, culled and coalesced, canvas draw calls and time spent in
+ * {@code onDraw}. Frame durations of the most recent {@link #WINDOW_SIZE} frames are kept for
+ * rolling percentiles. Counters are updated on the UI thread, {@link #snapshot()} can be taken
+ * from any thread.
+ */
+
+public final class DrawMetrics {
+
+  // Number of most recent frames rolling percentiles are computed over.
+  public static final int WINDOW_SIZE = 128;
+
+  /**
+   * Notified on the UI thread after each {@code onDraw} of the decoration.
+   */
+  public interface Listener {
+
+    /**
+     * @param metrics metrics of the decoration, last frame values are those of the frame just
+     * drawn.
+     */
+    void onFrameDrawn(DrawMetrics metrics);
+  }
+
+  private Listener mListener;
+
+  // Rolling window of onDraw durations in nanoseconds.
+  private final long[] mWindow = new long[WINDOW_SIZE];
+  // Sort buffer for percentiles, reused across snapshots.
+  private final long[] mSorted = new long[WINDOW_SIZE];
+  private int mWindowIndex;
+  private int mWindowCount;
+
+  private long mFrameCount;
+  private long mReplayedFrameCount;
+  private long mSegmentsDrawn;
+  private long mSegmentsCulled;
+  private long mSegmentsCoalesced;
+  private long mDrawCalls;
+  private long mDrawNanos;
+
+  // Current frame.
+  private long mFrameStart;
+  private long mCulledAtStart;
+  private boolean mFrameReplayed;
+  private int mFrameSegments;
+  private int mFrameCulled;
+  // Culled by other cullers of the decoration than the one passed to endFrame.
+  private int mFrameExtraCulled;
+  private int mFrameCoalesced;
+  private int mFrameDrawCalls;
+  private long mFrameNanos;
+
+  DrawMetrics() {
+  }
+
+  public void setListener(Listener listener) {
+    mListener = listener;
+  }
+
+  void beginFrame(SegmentCuller culler) {
+    mFrameReplayed = false;
+    mFrameSegments = 0;
+    mFrameCoalesced = 0;
+    mFrameDrawCalls = 0;
+    mFrameExtraCulled = 0;
+    mCulledAtStart = culler.getCulledCount();
+    mFrameStart = System.nanoTime();
+  }
+
+  void addSegments(int segments) {
+    mFrameSegments += segments;
+  }
+
+  /**
+   * Count segments culled by a culler other than the frame's own.
+   */
+  void addCulled(int segments) {
+    mFrameExtraCulled += segments;
+  }
+
+  void addCoalesced(int segments) {
+    mFrameCoalesced += segments;
+  }
+
+  void addDrawCalls(int drawCalls) {
+    mFrameDrawCalls += drawCalls;
+  }
+
+  /**
+   * Current frame replayed a cached display list with one draw call.
+   */
+  void addReplay() {
+    mFrameReplayed = true;
+    mFrameDrawCalls++;
+  }
+
+  void endFrame(SegmentCuller culler) {
+    final long nanos = System.nanoTime() - mFrameStart;
+    synchronized (this) {
+      mFrameNanos = nanos;
+      mFrameCulled = (int) (culler.getCulledCount() - mCulledAtStart) + mFrameExtraCulled;
+      mFrameCount++;
+      if (mFrameReplayed) {
+        mReplayedFrameCount++;
+      }
+      mSegmentsDrawn += mFrameSegments;
+      mSegmentsCulled += mFrameCulled;
+      mSegmentsCoalesced += mFrameCoalesced;
+      mDrawCalls += mFrameDrawCalls;
+      mDrawNanos += nanos;
+      mWindow[mWindowIndex] = nanos;
+      mWindowIndex = (mWindowIndex + 1) % WINDOW_SIZE;
+      if (mWindowCount < WINDOW_SIZE) {
+        mWindowCount++;
+      }
+    }
+    final Listener listener = mListener;
+    if (listener != null) {
+      listener.onFrameDrawn(this);
+    }
+  }
+
+  /**
+   * @return number of segments drawn in last frame, 0 if it replayed a cached display list.
+   */
+  public int getLastFrameSegments() {
+    return mFrameSegments;
+  }
+
+  public int getLastFrameCulled() {
+    return mFrameCulled;
+  }
+
+  public int getLastFrameCoalesced() {
+    return mFrameCoalesced;
+  }
+
+  public int getLastFrameDrawCalls() {
+    return mFrameDrawCalls;
+  }
+
+  public long getLastFrameNanos() {
+    return mFrameNanos;
+  }
+
+  public boolean isLastFrameReplayed() {
+    return mFrameReplayed;
+  }
+
+  /**
+   * @return immutable copy of accumulated counters and rolling percentiles.
+   */
+  public synchronized Snapshot snapshot() {
+    final int count = mWindowCount;
+    System.arraycopy(mWindow, 0, mSorted, 0, count);
+    Arrays.sort(mSorted, 0, count);
+    return new Snapshot(mFrameCount, mReplayedFrameCount, mSegmentsDrawn, mSegmentsCulled,
+        mSegmentsCoalesced, mDrawCalls, mDrawNanos, percentile(count, 50),
+        percentile(count, 90), percentile(count, 99), count > 0 ? mSorted[count - 1] : 0);
+  }
+
+  /**
+   * Clear counters and rolling window.
+   */
+  public synchronized void reset() {
+    mWindowIndex = 0;
+    mWindowCount = 0;
+    mFrameCount = 0;
+    mReplayedFrameCount = 0;
+    mSegmentsDrawn = 0;
+    mSegmentsCulled = 0;
+    mSegmentsCoalesced = 0;
+    mDrawCalls = 0;
+    mDrawNanos = 0;
+  }
+
+  // Nearest rank percentile of sorted window.
+  private long percentile(int count, int percent) {
+    if (count == 0) {
+      return 0;
+    }
+    final int rank = (int) Math.ceil(percent / 100.0 * count);
+    return mSorted[Math.max(0, rank - 1)];
+  }
+
+  /**
+   * Immutable draw metrics at one point in time.
+   */
+  public static final class Snapshot {
+
+    private final long mFrameCount;
+    private final long mReplayedFrameCount;
+    private final long mSegmentsDrawn;
+    private final long mSegmentsCulled;
+    private final long mSegmentsCoalesced;
+    private final long mDrawCalls;
+    private final long mDrawNanos;
+    private final long mP50Nanos;
+    private final long mP90Nanos;
+    private final long mP99Nanos;
+    private final long mMaxNanos;
+
+    Snapshot(long frameCount, long replayedFrameCount, long segmentsDrawn, long segmentsCulled,
+        long segmentsCoalesced, long drawCalls, long drawNanos, long p50Nanos, long p90Nanos,
+        long p99Nanos, long maxNanos) {
+      mFrameCount = frameCount;
+      mReplayedFrameCount = replayedFrameCount;
+      mSegmentsDrawn = segmentsDrawn;
+      mSegmentsCulled = segmentsCulled;
+      mSegmentsCoalesced = segmentsCoalesced;
+      mDrawCalls = drawCalls;
+      mDrawNanos = drawNanos;
+      mP50Nanos = p50Nanos;
+      mP90Nanos = p90Nanos;
+      mP99Nanos = p99Nanos;
+      mMaxNanos = maxNanos;
+    }
+
+    public long getFrameCount() {
+      return mFrameCount;
+    }
+
+    /**
+     * @return number of frames that replayed a cached display list.
+     */
+    public long getReplayedFrameCount() {
+      return mReplayedFrameCount;
+    }
+
+    public long getSegmentsDrawn() {
+      return mSegmentsDrawn;
+    }
+
+    public long getSegmentsCulled() {
+      return mSegmentsCulled;
+    }
+
+    public long getSegmentsCoalesced() {
+      return mSegmentsCoalesced;
+    }
+
+    public long getDrawCalls() {
+      return mDrawCalls;
+    }
+
+    /**
+     * @return total time spent in {@code onDraw} in nanoseconds.
+     */
+    public long getDrawNanos() {
+      return mDrawNanos;
+    }
+
+    /**
+     * Rolling percentiles below are computed over the last {@link #WINDOW_SIZE} frames.
+     */
+    public long getP50Nanos() {
+      return mP50Nanos;
+    }
+
+    public long getP90Nanos() {
+      return mP90Nanos;
+    }
+
+    public long getP99Nanos() {
+      return mP99Nanos;
+    }
+
+    public long getMaxNanos() {
+      return mMaxNanos;
+    }
+
+    @Override public String toString() {
+      return "Snapshot{frames=" + mFrameCount
+          + ", replayed=" + mReplayedFrameCount
+          + ", segmentsDrawn=" + mSegmentsDrawn
+          + ", segmentsCulled=" + mSegmentsCulled
+          + ", segmentsCoalesced=" + mSegmentsCoalesced
+          + ", drawCalls=" + mDrawCalls
+          + ", drawNanos=" + mDrawNanos
+          + ", p50=" + mP50Nanos
+          + ", p90=" + mP90Nanos
+          + ", p99=" + mP99Nanos
+          + ", max=" + mMaxNanos
+          + '}';
+    }
+  }
+}
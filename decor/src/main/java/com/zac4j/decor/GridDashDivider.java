@@ -17,174 +17,28 @@
 package com.zac4j.decor;
 
 import android.content.Context;
-import android.graphics.Canvas;
-import android.graphics.DashPathEffect;
-import android.graphics.Paint;
-import android.graphics.Rect;
 import android.support.annotation.ColorInt;
 import android.support.annotation.NonNull;
-import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
-import android.view.View;
 
 /**
  * Dash divider for grid layout manager pure code implementation.
  * Created by Zaccc on 2017/8/15.
  */
 
-public class GridDashDivider extends RecyclerView.ItemDecoration {
-
-  // Dash divider paint.
-  private Paint mPaint;
-  /**
-   * Draw divider strategy.
-   * Draw a grid item's left|top|right|bottom aspect divider
-   */
-  private boolean[] mDrawer;
-  /**
-   * Hide divider strategy:
-   * Hide left-most|top-most|right-most|bottom-most divider
-   */
-  private boolean[] mHider;
-  /**
-   * Set divider offset strategy.
-   * Set grid item's left|top|right|bottom aspect divider line offset
-   */
-  private float[] mOffset;
-  // View bounds container.
-  private final Rect mBounds = new Rect();
+public class GridDashDivider extends GridDividerEngine {
 
   /**
    * Creates a divider {@link RecyclerView.ItemDecoration} that can be used with a
    * {@link LinearLayoutManager}.
    */
-  private GridDashDivider(int dashGap, int dashLength, int dashThickness, int color,
-      boolean[] drawer, boolean[] hider, float[] offset) {
-
-    mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-    mPaint.setColor(color);
-    mPaint.setStyle(Paint.Style.STROKE);
-    mPaint.setStrokeWidth(dashThickness);
-    mPaint.setPathEffect(new DashPathEffect(new float[] { dashLength, dashGap }, 0));
-
-    mDrawer = drawer;
-    mHider = hider;
-    mOffset = offset;
-  }
-
-  @Override public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
-    if (parent.getLayoutManager() == null) {
-      return;
-    }
-    if (mDrawer[1] || mDrawer[3]) {
-      drawVertical(c, parent);
-    }
-    if (mDrawer[0] || mDrawer[2]) {
-      drawHorizontal(c, parent);
-    }
-  }
-
-  /**
-   * Draw divider for vertical display list view
-   *
-   * @param canvas canvas for draw divider
-   * @param parent list view for display divider
-   */
-  private void drawVertical(Canvas canvas, RecyclerView parent) {
-    canvas.save();
-
-    int spanCount = 0;
-    RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
-    if (layoutManager instanceof GridLayoutManager) {
-      spanCount = ((GridLayoutManager) layoutManager).getSpanCount();
-    }
-
-    final int childCount = parent.getChildCount();
-    for (int i = 0; i < childCount; i++) {
-      final View child = parent.getChildAt(i);
-      parent.getLayoutManager().getDecoratedBoundsWithMargins(child, mBounds);
-
-      final float startX = mBounds.left + child.getTranslationX() + mOffset[0];
-      final float stopX = mBounds.right - child.getTranslationX() - mOffset[2];
-      // Draw bottom divider.
-      if (mDrawer[3]) {
-        // If should hide bottom-most divider
-        if (mHider[3]) {
-          int lastCount = childCount % spanCount;
-          if (lastCount == 0) {
-            if (i < childCount - spanCount) {
-              final float bottomY =
-                  mBounds.bottom - child.getTranslationY() - mPaint.getStrokeWidth();
-              canvas.drawLine(startX, bottomY, stopX, bottomY, mPaint);
-            }
-          } else {
-            if (i < childCount - lastCount) {
-              final float bottomY =
-                  mBounds.bottom - child.getTranslationY() - mPaint.getStrokeWidth();
-              canvas.drawLine(startX, bottomY, stopX, bottomY, mPaint);
-            }
-          }
-        }
-
-        // Avoiding over draw, draw top-most divider.
-        if (mDrawer[1] && i < spanCount && !mHider[1]) {
-          final float topY = mBounds.top + child.getTranslationY() + mPaint.getStrokeWidth();
-          canvas.drawLine(startX, topY, stopX, topY, mPaint);
-        }
-        // Only Draw top divider.
-      } else {
-        final float topY = mBounds.top + child.getTranslationY() + mPaint.getStrokeWidth();
-        canvas.drawLine(startX, topY, stopX, topY, mPaint);
-      }
-    }
-    canvas.restore();
-  }
-
-  /**
-   * Draw divider for horizontal display list view
-   *
-   * @param canvas canvas for draw divider
-   * @param parent list view for display divider
-   */
-  private void drawHorizontal(Canvas canvas, RecyclerView parent) {
-    canvas.save();
-
-    int spanCount = 0;
-    RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
-    if (layoutManager instanceof GridLayoutManager) {
-      spanCount = ((GridLayoutManager) layoutManager).getSpanCount();
-    }
-
-    final int childCount = parent.getChildCount();
-    for (int i = 0; i < childCount; i++) {
-      final View child = parent.getChildAt(i);
-      parent.getLayoutManager().getDecoratedBoundsWithMargins(child, mBounds);
-
-      final float startY = mBounds.top + child.getTranslationY() + mOffset[1];
-      final float stopY = mBounds.bottom + child.getTranslationY() - mOffset[3];
-
-      // Draw right divider.
-      if (mDrawer[2]) {
-        // If need hide right-most divider
-        if (mHider[2] && (i + 1) % spanCount == 0) {
-          continue;
-        } else {
-          final float rightX = mBounds.right - child.getTranslationX() - mPaint.getStrokeWidth();
-          canvas.drawLine(rightX, startY, rightX, stopY, mPaint);
-        }
-        // Avoiding over draw, draw left-most divider.
-        if (mDrawer[0] && i % spanCount == 0 && !mHider[0]) {
-          final float leftX = mBounds.left + child.getTranslationX() + mPaint.getStrokeWidth();
-          canvas.drawLine(leftX, startY, leftX, stopY, mPaint);
-        }
-        // Only draw left divider.
-      } else {
-        final float leftX = mBounds.left + child.getTranslationX() + mPaint.getStrokeWidth();
-        canvas.drawLine(leftX, startY, leftX, stopY, mPaint);
-      }
-    }
-    canvas.restore();
+  private GridDashDivider(DashRenderer renderer, boolean[] drawer, boolean[] hider,
+      float[] offset, boolean batchDraw, boolean coalesce, boolean cacheDisplayList,
+      boolean reserveSpace, boolean incremental) {
+    // Lines run one thickness inside item bounds.
+    super(renderer, renderer.getThickness(), drawer, hider, offset, batchDraw, coalesce,
+        cacheDisplayList, reserveSpace, incremental);
   }
 
   public static Builder with(@NonNull Context context) {
@@ -203,6 +57,12 @@ public class GridDashDivider extends RecyclerView.ItemDecoration {
     private boolean[] drawer;
     private boolean[] hider;
     private float[] offset;
+    private boolean batchDraw;
+    private boolean coalesce;
+    private int renderer = DashRenderer.PATH_EFFECT;
+    private boolean cacheDisplayList;
+    private boolean reserveSpace;
+    private boolean incremental;
 
     public Builder(Context context) {
       this.context = context;
@@ -252,6 +112,50 @@ public class GridDashDivider extends RecyclerView.ItemDecoration {
       return this;
     }
 
+    public Builder batchDraw(boolean batchDraw) {
+      this.batchDraw = batchDraw;
+      return this;
+    }
+
+    public Builder coalesce(boolean coalesce) {
+      this.coalesce = coalesce;
+      return this;
+    }
+
+    /**
+     * @param renderer {@link DashRenderer#PATH_EFFECT}, {@link DashRenderer#SHADER},
+     * {@link DashRenderer#BITMAP} or {@link DashRenderer#AUTO}
+     */
+    public Builder renderer(int renderer) {
+      if (!DashRenderer.isValid(renderer)) {
+        throw new IllegalArgumentException("Illegal dash renderer!");
+      }
+      this.renderer = renderer;
+      return this;
+    }
+
+    public Builder cacheDisplayList(boolean cacheDisplayList) {
+      this.cacheDisplayList = cacheDisplayList;
+      return this;
+    }
+
+    /**
+     * Reserve divider thickness around items, so dividers never paint over item content.
+     */
+    public Builder reserveSpace(boolean reserveSpace) {
+      this.reserveSpace = reserveSpace;
+      return this;
+    }
+
+    /**
+     * Cache segments of resting items across frames, only items moved by the item animator are
+     * recomputed.
+     */
+    public Builder incremental(boolean incremental) {
+      this.incremental = incremental;
+      return this;
+    }
+
     public GridDashDivider build() {
       if (dashGap <= 0) {
         throw new IllegalArgumentException("Dash gap must be greater than 0.");
@@ -262,7 +166,13 @@ public class GridDashDivider extends RecyclerView.ItemDecoration {
       if (dashThickness <= 0) {
         throw new IllegalArgumentException("Dash thickness must be greater than 0.");
       }
-      return new GridDashDivider(dashGap, dashLength, dashThickness, color, drawer, hider, offset);
+      final int backend = renderer == DashRenderer.AUTO
+          ? RendererCalibration.select(context, dashGap, dashLength, dashThickness, color)
+          : renderer;
+      DashStyle style = DashStyleCache.obtain(dashGap, dashLength, dashThickness, color, backend);
+      DecorMemory.install(context);
+      return new GridDashDivider(style.getDashRenderer(), drawer, hider, offset, batchDraw,
+          coalesce, cacheDisplayList, reserveSpace, incremental);
     }
   }
 }
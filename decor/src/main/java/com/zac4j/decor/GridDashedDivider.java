@@ -17,188 +17,34 @@
 package com.zac4j.decor;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Rect;
-import android.graphics.RectF;
-import android.graphics.drawable.BitmapDrawable;
+import android.support.annotation.ColorInt;
 import android.support.annotation.NonNull;
-import android.support.v4.content.ContextCompat;
-import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
-import android.view.View;
 
 /**
  * Dashed divider for grid layout manager bitmap implementation
  * Created by Zaccc on 2017/8/15.
  */
 
-public class GridDashedDivider extends RecyclerView.ItemDecoration {
+public class GridDashedDivider extends GridDividerEngine {
 
-  /**
-   * Draw divider strategy.
-   * Draw a grid item's left|top|right|bottom aspect divider
-   */
-  private boolean[] mDrawer;
-  /**
-   * Hide divider strategy:
-   * Hide left-most|top-most|right-most|bottom-most divider
-   */
-  private boolean[] mHider;
-  /**
-   * Set divider offset strategy.
-   * Set grid item's left|top|right|bottom aspect divider line offset
-   */
-  private float[] mOffset;
-  // View bounds container.
-  private final Rect mBounds = new Rect();
-
-  private Bitmap mVerticalDivider;
-  private Bitmap mHorizontalDivider;
+  // Default dash look in dp, matches the former xhdpi dash bitmaps.
+  private static final float DEFAULT_DASH_GAP = 2;
+  private static final float DEFAULT_DASH_LENGTH = 1;
+  private static final float DEFAULT_DASH_THICKNESS = 1;
+  private static final int DEFAULT_COLOR = 0xFF6F88A0;
 
   /**
    * Creates a divider {@link RecyclerView.ItemDecoration} that can be used with a
    * {@link LinearLayoutManager}.
    */
-  private GridDashedDivider(Context context, boolean[] drawer, boolean[] hider, float[] offset) {
-    mDrawer = drawer;
-    mHider = hider;
-    mOffset = offset;
-
-    // Fetch bitmap from resource
-    fetchBitmap(context);
-  }
-
-  @Override public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
-    if (parent.getLayoutManager() == null) {
-      return;
-    }
-    if (mDrawer[1] || mDrawer[3]) {
-      drawHorizontal(c, parent);
-    }
-    if (mDrawer[0] || mDrawer[2]) {
-      drawVertical(c, parent);
-    }
-  }
-
-  private void fetchBitmap(Context context) {
-    // fetch horizontal bitmap
-    BitmapDrawable horizontalDrawable =
-        (BitmapDrawable) ContextCompat.getDrawable(context, R.drawable.dash_divider_horizontal);
-    mHorizontalDivider = horizontalDrawable.getBitmap();
-
-    // fetch vertical bitmap
-    BitmapDrawable verticalDrawable =
-        (BitmapDrawable) ContextCompat.getDrawable(context, R.drawable.dash_divider_vertical);
-    mVerticalDivider = verticalDrawable.getBitmap();
-  }
-
-  /**
-   * Draw divider for vertical display list view
-   *
-   * @param canvas canvas for draw divider
-   * @param parent list view for display divider
-   */
-  private void drawHorizontal(Canvas canvas, RecyclerView parent) {
-    canvas.save();
-
-    int spanCount = 0;
-    RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
-    if (layoutManager instanceof GridLayoutManager) {
-      spanCount = ((GridLayoutManager) layoutManager).getSpanCount();
-    }
-
-    final int childCount = parent.getChildCount();
-    for (int i = 0; i < childCount; i++) {
-      final View child = parent.getChildAt(i);
-      parent.getLayoutManager().getDecoratedBoundsWithMargins(child, mBounds);
-
-      final float startX = mBounds.left + child.getTranslationX() + mOffset[0];
-      final float stopX = mBounds.right - child.getTranslationX() - mOffset[2];
-      // Draw bottom divider.
-      if (mDrawer[3]) {
-        // If should hide bottom-most divider
-        if (mHider[3]) {
-          int lastCount = childCount % spanCount;
-          if (lastCount == 0) {
-            if (i < childCount - spanCount) {
-              final float bottomY = mBounds.bottom - child.getTranslationY();
-              canvas.drawBitmap(mHorizontalDivider, new Rect(0, 0, mBounds.right - mBounds.left, 2),
-                  new RectF(startX, bottomY - 2, stopX, bottomY), null);
-            }
-          } else {
-            if (i < childCount - lastCount) {
-              final float bottomY = mBounds.bottom - child.getTranslationY();
-              canvas.drawBitmap(mHorizontalDivider, new Rect(0, 0, mBounds.right - mBounds.left, 2),
-                  new RectF(startX, bottomY - 2, stopX, bottomY), null);
-            }
-          }
-        }
-
-        // Avoiding over draw, draw top-most divider.
-        if (mDrawer[1] && i < spanCount && !mHider[1]) {
-          final float topY = mBounds.top + child.getTranslationY();
-          canvas.drawBitmap(mHorizontalDivider, new Rect(0, 0, mBounds.right - mBounds.left, 2),
-              new RectF(startX, topY, stopX, topY + 2), null);
-        }
-        // Only Draw top divider.
-      } else {
-        final float topY = mBounds.top + child.getTranslationY();
-        canvas.drawBitmap(mHorizontalDivider, new Rect(0, 0, mBounds.right - mBounds.left, 2),
-            new RectF(startX, topY, stopX, topY + 2), null);
-      }
-    }
-    canvas.restore();
-  }
-
-  /**
-   * Draw divider for horizontal display list view
-   *
-   * @param canvas canvas for draw divider
-   * @param parent list view for display divider
-   */
-  private void drawVertical(Canvas canvas, RecyclerView parent) {
-    canvas.save();
-
-    int spanCount = 0;
-    RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
-    if (layoutManager instanceof GridLayoutManager) {
-      spanCount = ((GridLayoutManager) layoutManager).getSpanCount();
-    }
-
-    final int childCount = parent.getChildCount();
-    for (int i = 0; i < childCount; i++) {
-      final View child = parent.getChildAt(i);
-      parent.getLayoutManager().getDecoratedBoundsWithMargins(child, mBounds);
-
-      final float startY = mBounds.top + child.getTranslationY() + mOffset[1];
-      final float stopY = mBounds.bottom + child.getTranslationY() - mOffset[3];
-
-      // Draw right divider.
-      if (mDrawer[2]) {
-        // If need hide right-most divider
-        if (mHider[2] && (i + 1) % spanCount == 0) {
-          continue;
-        } else {
-          final float rightX = mBounds.right - child.getTranslationX();
-          canvas.drawBitmap(mVerticalDivider, new Rect(0, 0, 2, (int) (stopY - startY)),
-              new RectF(rightX - 2, startY, rightX, stopY), null);
-        }
-        // Avoiding over draw, draw left-most divider.
-        if (mDrawer[0] && i % spanCount == 0 && !mHider[0]) {
-          final float leftX = mBounds.left + child.getTranslationX();
-          canvas.drawBitmap(mVerticalDivider, new Rect(0, 0, 2, (int) (stopY - startY)),
-              new RectF(leftX, startY, leftX + 2, stopY), null);
-        }
-        // Only draw left divider.
-      } else {
-        final float leftX = mBounds.left + child.getTranslationX();
-        canvas.drawBitmap(mVerticalDivider, new Rect(0, 0, 2, (int) (stopY - startY)),
-            new RectF(leftX, startY, leftX + 2, stopY), null);
-      }
-    }
-    canvas.restore();
+  private GridDashedDivider(DashRenderer renderer, boolean[] drawer, boolean[] hider,
+      float[] offset, boolean coalesce, boolean cacheDisplayList, boolean reserveSpace,
+      boolean incremental) {
+    // Lines are centered half a bitmap thickness inside item bounds.
+    super(renderer, renderer.getThickness() / 2, drawer, hider, offset, false, coalesce,
+        cacheDisplayList, reserveSpace, incremental);
   }
 
   public static Builder with(@NonNull Context context) {
@@ -210,14 +56,51 @@ public class GridDashedDivider extends RecyclerView.ItemDecoration {
 
   public static class Builder {
     private Context context;
+    private int dashGap;
+    private int dashLength;
+    private int dashThickness;
+    private int color = DEFAULT_COLOR;
     private boolean[] drawer;
     private boolean[] hider;
     private float[] offset;
+    private boolean coalesce;
+    private boolean cacheDisplayList;
+    private boolean reserveSpace;
+    private boolean incremental;
 
     public Builder(Context context) {
       this.context = context;
     }
 
+    public Builder dashGap(int gap) {
+      if (gap <= 0) {
+        throw new IllegalArgumentException("Dash gap must be greater than 0.");
+      }
+      this.dashGap = gap;
+      return this;
+    }
+
+    public Builder dashLength(int length) {
+      if (length <= 0) {
+        throw new IllegalArgumentException("Dash length must be greater than 0.");
+      }
+      this.dashLength = length;
+      return this;
+    }
+
+    public Builder dashThickness(int thickness) {
+      if (thickness <= 0) {
+        throw new IllegalArgumentException("Dash thickness must be greater than 0.");
+      }
+      this.dashThickness = thickness;
+      return this;
+    }
+
+    public Builder color(@ColorInt int color) {
+      this.color = color;
+      return this;
+    }
+
     public Builder drawer(boolean left, boolean top, boolean right, boolean bottom) {
       this.drawer = new boolean[] { left, top, right, bottom };
       return this;
@@ -233,8 +116,48 @@ public class GridDashedDivider extends RecyclerView.ItemDecoration {
       return this;
     }
 
+    public Builder coalesce(boolean coalesce) {
+      this.coalesce = coalesce;
+      return this;
+    }
+
+    public Builder cacheDisplayList(boolean cacheDisplayList) {
+      this.cacheDisplayList = cacheDisplayList;
+      return this;
+    }
+
+    /**
+     * Reserve divider thickness around items, so dividers never paint over item content.
+     */
+    public Builder reserveSpace(boolean reserveSpace) {
+      this.reserveSpace = reserveSpace;
+      return this;
+    }
+
+    /**
+     * Cache segments of resting items across frames, only items moved by the item animator are
+     * recomputed.
+     */
+    public Builder incremental(boolean incremental) {
+      this.incremental = incremental;
+      return this;
+    }
+
     public GridDashedDivider build() {
-      return new GridDashedDivider(context, drawer, hider, offset);
+      // Unset dash sizes fall back to the default look at device density.
+      final float density = context.getResources().getDisplayMetrics().density;
+      final int gap = dashGap > 0 ? dashGap : toPixels(DEFAULT_DASH_GAP, density);
+      final int length = dashLength > 0 ? dashLength : toPixels(DEFAULT_DASH_LENGTH, density);
+      final int thickness =
+          dashThickness > 0 ? dashThickness : toPixels(DEFAULT_DASH_THICKNESS, density);
+      DashStyle style = DashStyleCache.obtain(gap, length, thickness, color, DashRenderer.BITMAP);
+      DecorMemory.install(context);
+      return new GridDashedDivider(style.getDashRenderer(), drawer, hider, offset, coalesce,
+          cacheDisplayList, reserveSpace, incremental);
+    }
+
+    private static int toPixels(float dp, float density) {
+      return Math.max(1, Math.round(dp * density));
     }
   }
 }
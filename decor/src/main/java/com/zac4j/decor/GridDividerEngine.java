@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Trace;
+import android.support.annotation.ColorInt;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import com.zac4j.decor.geometry.GridGeometry;
+import com.zac4j.decor.geometry.GridSegmentCache;
+import com.zac4j.decor.geometry.SegmentBuffer;
+import com.zac4j.decor.geometry.SegmentCuller;
+
+/**
+ * Grid divider engine shared by grid decorations, they only differ in the {@link DashRenderer}
+ * backend drawing the segments.
+ */
+
+abstract class GridDividerEngine extends RecyclerView.ItemDecoration
+    implements DecorMemory.Trimmable {
+
+  // Trace section name of onDraw, named after the concrete decoration.
+  private final String mTraceSection;
+
+  // Dash divider render backend, shared through DashStyleCache until first mutated.
+  private DashRenderer mRenderer;
+  private boolean mOwnsRenderer;
+  // Line center distance from item bounds edge per thickness.
+  private final float mInsetRatio;
+  // Divider segment math from drawer, hider and offset strategies.
+  private final GridGeometry mGeometry;
+  // View bounds container.
+  private final Rect mBounds = new Rect();
+  private final Rect mClipBounds = new Rect();
+  private final int[] mInsets = new int[4];
+  // Caches kept across frames, one set per parent.
+  private final ParentStateTable<ParentState> mStates;
+  // Bumped whenever recorded dividers or cached segments of all parents are out of date.
+  private int mDisplayListKey;
+  private int mSegmentKey;
+  /**
+   * Whether collect segments and draw them with one {@link Canvas#drawLines} call per frame,
+   * instead of one {@link Canvas#drawLine} call per grid item aspect.
+   */
+  private boolean mBatchDraw;
+  /**
+   * Whether merge collinear adjacent segments into one line per row and per column, so each
+   * shared edge is drawn once and dash phase runs continuously across items.
+   */
+  private boolean mCoalesce;
+  // Segments container, reused across frames.
+  private final SegmentBuffer mSegments = new SegmentBuffer();
+  // Culls segments out of canvas clip bounds.
+  private final SegmentCuller mCuller = new SegmentCuller();
+  /**
+   * Whether record dividers once per layout pass and replay them with a translation on scroll
+   * only frames.
+   */
+  private boolean mCacheDisplayList;
+  /**
+   * Whether reserve divider thickness around items through {@link #getItemOffsets}, dividers
+   * are then drawn into the reserved gutters instead of over item content.
+   */
+  private boolean mReserveSpace;
+  /**
+   * Whether cache segments of resting items across frames and recompute only moving items.
+   */
+  private boolean mIncremental;
+  // Draw metrics, null unless enabled.
+  private DrawMetrics mMetrics;
+  // Number of descriptors resolved through prefetch instead of on draw.
+  private long mPrefetchedCount;
+
+  /**
+   * @param renderer draws divider segments.
+   * @param inset distance from item bounds edge inward to line center.
+   */
+  GridDividerEngine(DashRenderer renderer, float inset, boolean[] drawer, boolean[] hider,
+      float[] offset, boolean batchDraw, boolean coalesce, boolean cacheDisplayList,
+      boolean reserveSpace, boolean incremental) {
+    mRenderer = renderer;
+    mTraceSection = getClass().getSimpleName() + "#onDraw";
+
+    mGeometry = new GridGeometry(drawer, hider, offset, mCuller);
+    mGeometry.setThickness(mRenderer.getThickness(), inset);
+    mInsetRatio = inset / mRenderer.getThickness();
+    mGeometry.setReserveSpace(reserveSpace);
+    mStates = new ParentStateTable<>(new ParentStateTable.Factory<ParentState>() {
+      @Override public ParentState create() {
+        return new ParentState(mGeometry, mReserveSpace);
+      }
+    });
+    mBatchDraw = batchDraw;
+    mCoalesce = coalesce;
+    mCacheDisplayList = cacheDisplayList;
+    mReserveSpace = reserveSpace;
+    mIncremental = incremental;
+    DecorMemory.register(this);
+  }
+
+  /**
+   * Set dash color. Like all animatable properties it only updates paint state, call
+   * {@link RecyclerView#invalidate()} to redraw, no layout pass is needed.
+   */
+  public void setColor(@ColorInt int color) {
+    mutateRenderer().setColor(color);
+  }
+
+  /**
+   * Set dash alpha, from 0 to 255.
+   */
+  public void setAlpha(int alpha) {
+    if (alpha < 0 || alpha > 255) {
+      throw new IllegalArgumentException("Alpha must be between 0 and 255.");
+    }
+    mutateRenderer().setAlpha(alpha);
+  }
+
+  /**
+   * Shift dashes backward along lines, e.g. animate it for a marching ants effect. Phase is
+   * applied in whole pixels and wraps at dash period.
+   */
+  public void setDashPhase(float phase) {
+    mutateRenderer().setPhase(phase);
+  }
+
+  /**
+   * Set line thickness in pixels, lines keep their relative inset from item bounds. Reserved
+   * space keeps its size until items are laid out again.
+   */
+  public void setDashThickness(float thickness) {
+    if (thickness <= 0) {
+      throw new IllegalArgumentException("Dash thickness must be greater than 0.");
+    }
+    mutateRenderer().setThickness(thickness);
+    mGeometry.setThickness(thickness, thickness * mInsetRatio);
+    mSegmentKey++;
+  }
+
+  /**
+   * @return private renderer, copied from the shared one on first call. Recorded dividers are
+   * dropped as paint state changes.
+   */
+  private DashRenderer mutateRenderer() {
+    if (!mOwnsRenderer) {
+      mRenderer = mRenderer.copy();
+      mOwnsRenderer = true;
+    }
+    invalidateDisplayLists();
+    return mRenderer;
+  }
+
+  /**
+   * Switch between batch draw and per line draw, the change takes effect on next frame.
+   *
+   * @param batchDraw true to draw all segments with one {@link Canvas#drawLines} call.
+   */
+  public void setBatchDrawEnabled(boolean batchDraw) {
+    mBatchDraw = batchDraw;
+    invalidateDisplayLists();
+  }
+
+  public boolean isBatchDrawEnabled() {
+    return mBatchDraw;
+  }
+
+  /**
+   * Switch row/column line coalescing, the change takes effect on next frame. Items lines only
+   * merge when they touch, i.e. with zero offset along the line.
+   *
+   * @param coalesce true to merge collinear adjacent segments before drawing.
+   */
+  public void setCoalesceEnabled(boolean coalesce) {
+    mCoalesce = coalesce;
+    invalidateDisplayLists();
+  }
+
+  public boolean isCoalesceEnabled() {
+    return mCoalesce;
+  }
+
+  /**
+   * Switch display list caching, recorded dividers are replayed with a translation while the
+   * list only scrolls.
+   *
+   * @param cacheDisplayList true to cache divider drawing across scroll only frames.
+   */
+  public void setDisplayListCacheEnabled(boolean cacheDisplayList) {
+    mCacheDisplayList = cacheDisplayList;
+    invalidateDisplayLists();
+  }
+
+  public boolean isDisplayListCacheEnabled() {
+    return mCacheDisplayList;
+  }
+
+  /**
+   * Switch incremental redraw, segments of resting items are cached across frames and only
+   * items that move, e.g. animated by the {@link RecyclerView.ItemAnimator}, are recomputed.
+   *
+   * @param incremental true to reuse segments of items whose layout did not change.
+   */
+  public void setIncrementalEnabled(boolean incremental) {
+    mIncremental = incremental;
+    mSegmentKey++;
+  }
+
+  public boolean isIncrementalEnabled() {
+    return mIncremental;
+  }
+
+  /**
+   * Resolve the divider descriptor of an item, i.e. its grid edges and aspects to draw, ahead of
+   * the first frame showing it. Call it from {@link RecyclerView.Adapter#onBindViewHolder}, which
+   * {@code GapWorker} runs for prefetched items in idle frame time, so the frame an item scrolls
+   * into view only emits its segments.
+   *
+   * @param parent recycler view the item is bound for, e.g. kept from
+   * {@link RecyclerView.Adapter#onAttachedToRecyclerView}.
+   * @param position adapter position of the bound item.
+   */
+  public void prefetch(RecyclerView parent, int position) {
+    if (mStates.get(parent).mEdgeTable.prefetch(position)) {
+      mPrefetchedCount++;
+    }
+  }
+
+  /**
+   * @return number of divider descriptors resolved through {@link #prefetch}.
+   */
+  public long getPrefetchedCount() {
+    return mPrefetchedCount;
+  }
+
+  /**
+   * @return number of divider segments skipped for being out of canvas clip bounds.
+   */
+  public long getCulledSegmentCount() {
+    return mCuller.getCulledCount();
+  }
+
+  /**
+   * @return number of divider segments shortened to canvas clip bounds.
+   */
+  public long getTrimmedSegmentCount() {
+    return mCuller.getTrimmedCount();
+  }
+
+  /**
+   * Switch draw metrics collection, metrics are dropped when disabled.
+   */
+  public void setMetricsEnabled(boolean enabled) {
+    if (!enabled) {
+      mMetrics = null;
+    } else if (mMetrics == null) {
+      mMetrics = new DrawMetrics();
+    }
+  }
+
+  /**
+   * @return draw metrics of this decoration, or null if metrics are disabled.
+   */
+  public DrawMetrics getMetrics() {
+    return mMetrics;
+  }
+
+  /**
+   * Release caches of all parents on memory pressure, see {@link DecorMemory}.
+   */
+  @Override public void trimMemory(int level) {
+    mStates.trimMemory(level);
+    if (DecorMemory.releasesAll(level)) {
+      DecorMemory.addReleasedCacheBytes(mSegments.release());
+    }
+  }
+
+  /**
+   * @return number of recycler views this decoration keeps caches for.
+   */
+  int getParentStateCount() {
+    return mStates.size();
+  }
+
+  @Override public void getItemOffsets(Rect outRect, View view, RecyclerView parent,
+      RecyclerView.State state) {
+    if (!mReserveSpace || parent.getLayoutManager() == null) {
+      outRect.set(0, 0, 0, 0);
+      return;
+    }
+    final GridEdgeTable edgeTable = mStates.get(parent).mEdgeTable;
+    if (!edgeTable.bind(parent, state)) {
+      outRect.set(0, 0, 0, 0);
+      return;
+    }
+    // Same edge rules as draw pass, so each drawn aspect gets exactly its gutter.
+    final int aspects = edgeTable.getAspects(parent.getChildLayoutPosition(view));
+    mGeometry.getInsets(aspects, mInsets);
+    outRect.set(mInsets[0], mInsets[1], mInsets[2], mInsets[3]);
+  }
+
+  @Override public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
+    if (parent.getLayoutManager() == null) {
+      return;
+    }
+    final ParentState parentState = mStates.get(parent);
+    if (!parentState.mEdgeTable.bind(parent, state)) {
+      return;
+    }
+    Trace.beginSection(mTraceSection);
+    try {
+      final DrawMetrics metrics = mMetrics;
+      if (metrics != null) {
+        metrics.beginFrame(mCuller);
+      }
+      final DisplayListCache displayListCache = parentState.mDisplayListCache;
+      if (mCacheDisplayList && DisplayListCache.isSupported(c)) {
+        // Recordings drawn by a fallback are dropped once the renderer is loaded.
+        final int key = mDisplayListKey << 1 | (mRenderer.isLoaded() ? 1 : 0);
+        if (!displayListCache.canReplay(parent, key)) {
+          // Recorded dividers are replayed at other scroll offsets, nothing can be culled.
+          drawDividers(displayListCache.beginRecording(parent), parent, parentState, false);
+          displayListCache.endRecording();
+        } else if (metrics != null) {
+          metrics.addReplay();
+        }
+        displayListCache.draw(c);
+      } else {
+        drawDividers(c, parent, parentState, true);
+      }
+      mRenderer.invalidateWhenLoaded(parent);
+      if (metrics != null) {
+        metrics.endFrame(mCuller);
+      }
+    } finally {
+      Trace.endSection();
+    }
+  }
+
+  private void drawDividers(Canvas c, RecyclerView parent, ParentState parentState,
+      boolean cull) {
+    if (cull && c.getClipBounds(mClipBounds)) {
+      mCuller.begin(mClipBounds.left, mClipBounds.top, mClipBounds.right, mClipBounds.bottom,
+          mRenderer.getThickness(), mRenderer.getPeriod());
+    } else {
+      mCuller.disable();
+    }
+    mSegments.reset();
+    final GridEdgeTable edgeTable = parentState.mEdgeTable;
+    final GridSegmentCache segmentCache = parentState.mSegmentCache;
+    final RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+    final int childCount = parent.getChildCount();
+    final RecyclerView.ItemAnimator animator = parent.getItemAnimator();
+    final boolean animating = animator != null && animator.isRunning();
+    final boolean incremental = mIncremental;
+    if (incremental) {
+      // Both counters only grow, so their sum changes whenever either does.
+      segmentCache.begin(childCount, edgeTable.getGeneration() + mSegmentKey);
+    }
+    for (int i = 0; i < childCount; i++) {
+      final View child = parent.getChildAt(i);
+      final int position = parent.getChildLayoutPosition(child);
+      if (incremental && !isMoving(parent, child, animating)) {
+        // Resting child, reuse its segments unless its layout changed.
+        layoutManager.getDecoratedBoundsWithMargins(child, mBounds);
+        if (!segmentCache.addCached(i, position, mBounds.left, mBounds.top, mBounds.right,
+            mBounds.bottom, mCuller, mSegments)) {
+          segmentCache.addStatic(i, position, edgeTable.getAspects(position), mBounds.left,
+              mBounds.top, mBounds.right, mBounds.bottom, mCuller, mSegments);
+        }
+        continue;
+      }
+      final int aspects = edgeTable.getAspects(position);
+      if (aspects == 0) {
+        continue;
+      }
+      layoutManager.getDecoratedBoundsWithMargins(child, mBounds);
+      mGeometry.addItem(mSegments, aspects, mBounds.left, mBounds.top, mBounds.right,
+          mBounds.bottom, child.getTranslationX(), child.getTranslationY());
+    }
+    if (incremental) {
+      segmentCache.end();
+    }
+    final int coalesced = mCoalesce ? mSegments.coalesce() : 0;
+    final int drawCalls = mBatchDraw
+        ? mRenderer.drawLines(c, mSegments)
+        : mRenderer.drawEach(c, mSegments);
+    if (mMetrics != null) {
+      mMetrics.addSegments(mSegments.segmentCount());
+      mMetrics.addCoalesced(coalesced);
+      mMetrics.addDrawCalls(drawCalls);
+    }
+  }
+
+  private void invalidateDisplayLists() {
+    // Recordings of all parents are dropped lazily on their next frame.
+    mDisplayListKey++;
+  }
+
+  /**
+   * Child does not rest at its layout bounds, e.g. it is animated by the item animator or
+   * dragged, so its segments follow its translation and are not cached.
+   */
+  private static boolean isMoving(RecyclerView parent, View child, boolean animating) {
+    return child.getTranslationX() != 0
+        || child.getTranslationY() != 0
+        || animating && !parent.getChildViewHolder(child).isRecyclable();
+  }
+
+  /**
+   * Caches of one parent: item descriptors, segments of resting items and recorded dividers.
+   */
+  private static final class ParentState implements ParentStateTable.State {
+
+    final GridEdgeTable mEdgeTable;
+    final GridSegmentCache mSegmentCache;
+    final DisplayListCache mDisplayListCache = new DisplayListCache();
+
+    ParentState(GridGeometry geometry, boolean reserveSpace) {
+      mEdgeTable = new GridEdgeTable(geometry);
+      mEdgeTable.setInvalidateItemDecorations(reserveSpace);
+      mSegmentCache = new GridSegmentCache(geometry);
+    }
+
+    @Override public void trimMemory(int level) {
+      mDisplayListCache.trimMemory(level);
+      if (DecorMemory.releasesCaches(level)) {
+        DecorMemory.addReleasedCacheBytes(mSegmentCache.release());
+      }
+      if (DecorMemory.releasesAll(level)) {
+        // Descriptors are resolved again from the span size lookup on next draw.
+        DecorMemory.addReleasedCacheBytes(mEdgeTable.unbind());
+      }
+    }
+
+    @Override public void release() {
+      mEdgeTable.unbind();
+      mSegmentCache.invalidate();
+      mDisplayListCache.release();
+    }
+  }
+}
@@ -0,0 +1,563 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import com.zac4j.decor.geometry.GridGeometry;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Divider descriptor cache of grid items keyed by layout position, the position items are laid
+ * out at, see {@link RecyclerView#getChildLayoutPosition}.
+ *
+ * The descriptor of an item is the mask of aspects to draw, resolved from grid edges and the
+ * drawer/hider strategies of the decoration. Offsets and dash style are the same for every item
+ * of a grid decoration, so they are not kept per item. Edges are derived from
+ * {@link GridLayoutManager.SpanSizeLookup} span index and span size, so they stay correct while
+ * the grid scrolls and with mixed span sizes. Descriptors are kept in a window of at most
+ * {@link #MAX_ENTRIES} positions that slides along with the attached items, so memory stays
+ * bounded for any adapter size. Lookups are O(1) once resolved, and entries are shifted or
+ * dropped incrementally from the adapter notify events instead of being re-resolved.
+ *
+ * Notify events carry adapter positions, which layout positions only follow once a layout pass
+ * consumed the update. Events are queued and applied on the first {@link #bind} outside of
+ * pre-layout, so descriptors keep the positions of the last layout until then, including while
+ * a predictive animation lays out items at their pre-layout positions.
+ *
+ * The span index cache of the app's lookup is left as configured. Unless the lookup computes span
+ * indices itself, they are walked on from the closest resolved entry, which keeps the span index
+ * of its position.
+ */
+
+final class GridEdgeTable extends RecyclerView.AdapterDataObserver {
+
+  static final int EDGE_LEFT = GridGeometry.EDGE_LEFT;
+  static final int EDGE_TOP = GridGeometry.EDGE_TOP;
+  static final int EDGE_RIGHT = GridGeometry.EDGE_RIGHT;
+  static final int EDGE_BOTTOM = GridGeometry.EDGE_BOTTOM;
+  // Marks a resolved table entry, a zero entry is unresolved.
+  private static final int RESOLVED = 1 << 4;
+  // Span index of a resolved entry is kept above the aspect and resolved bits.
+  private static final int SPAN_INDEX_SHIFT = 5;
+  // Span counts whose span indices fit into an entry.
+  private static final int MAX_WALKED_SPAN_COUNT = 1 << (Character.SIZE - SPAN_INDEX_SHIFT);
+  // Max number of positions kept, two bytes each.
+  static final int MAX_ENTRIES = 1 << 13;
+
+  // Queued notify events, an event type and three arguments each.
+  private static final int UPDATE_CHANGED = 0;
+  private static final int UPDATE_RANGE_CHANGED = 1;
+  private static final int UPDATE_INSERTED = 2;
+  private static final int UPDATE_REMOVED = 3;
+  private static final int UPDATE_MOVED = 4;
+  private static final int UPDATE_SIZE = 4;
+  // Events queued before a layout, more are collapsed into a full change.
+  private static final int MAX_PENDING_UPDATES = 32;
+
+  private static final GridLayoutManager.SpanSizeLookup SINGLE_SPAN_LOOKUP =
+      new GridLayoutManager.DefaultSpanSizeLookup();
+
+  // Resolves descriptors from edges.
+  private final GridGeometry mGeometry;
+  // Descriptors of positions from mBase on.
+  private char[] mEntries = new char[0];
+  private int mBase;
+  private int mItemCount;
+
+  // Weakly held, adapter and parent reference each other and the table is kept per parent.
+  private WeakReference<RecyclerView.Adapter> mAdapter;
+  private WeakReference<RecyclerView> mParent;
+  /**
+   * Whether item decoration insets depend on the descriptors, so parent must recompute them when
+   * descriptors of attached items change.
+   */
+  private boolean mInvalidateItemDecorations;
+  private GridLayoutManager.SpanSizeLookup mLookup;
+  private int mSpanCount;
+  private int mOrientation;
+  // Whether span indices are walked from resolved entries instead of asking the lookup.
+  private boolean mWalkSpanIndices;
+  // Bumped on every invalidation, lets callers drop data derived from the descriptors.
+  private int mGeneration;
+  // Notify events not yet consumed by a layout pass.
+  private final int[] mPendingUpdates = new int[MAX_PENDING_UPDATES * UPDATE_SIZE];
+  private int mPendingCount;
+
+  /**
+   * @param geometry resolves aspects to draw from item edges.
+   */
+  GridEdgeTable(GridGeometry geometry) {
+    mGeometry = geometry;
+  }
+
+  /**
+   * Bind table to the current adapter and layout manager of parent.
+   *
+   * @param state state of current layout. Pending notify events are applied unless this is a
+   * pre-layout pass, whose layout positions and item count come before them.
+   * @return false if parent does not hold a {@link LinearLayoutManager} or its subclass.
+   */
+  boolean bind(RecyclerView parent, RecyclerView.State state) {
+    final RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+    GridLayoutManager.SpanSizeLookup lookup;
+    int spanCount;
+    int orientation;
+    if (layoutManager instanceof GridLayoutManager) {
+      GridLayoutManager gridLayoutManager = (GridLayoutManager) layoutManager;
+      lookup = gridLayoutManager.getSpanSizeLookup();
+      spanCount = gridLayoutManager.getSpanCount();
+      orientation = gridLayoutManager.getOrientation();
+    } else if (layoutManager instanceof LinearLayoutManager) {
+      // Linear list is a grid with single span.
+      lookup = SINGLE_SPAN_LOOKUP;
+      spanCount = 1;
+      orientation = ((LinearLayoutManager) layoutManager).getOrientation();
+    } else {
+      return false;
+    }
+
+    if (mParent == null || mParent.get() != parent) {
+      mParent = new WeakReference<>(parent);
+    }
+    final RecyclerView.Adapter adapter = parent.getAdapter();
+    final RecyclerView.Adapter boundAdapter = mAdapter != null ? mAdapter.get() : null;
+    final boolean observing = adapter != null && adapter == boundAdapter;
+    if (adapter != boundAdapter) {
+      if (boundAdapter != null) {
+        boundAdapter.unregisterAdapterDataObserver(this);
+      }
+      if (adapter != null) {
+        adapter.registerAdapterDataObserver(this);
+      }
+      mAdapter = adapter != null ? new WeakReference<>(adapter) : null;
+      mPendingCount = 0;
+      invalidateFrom(0);
+    }
+    if (lookup != mLookup || spanCount != mSpanCount || orientation != mOrientation) {
+      mLookup = lookup;
+      mSpanCount = spanCount;
+      mOrientation = orientation;
+      mWalkSpanIndices = spanCount > 1 && spanCount < MAX_WALKED_SPAN_COUNT
+          && !overridesSpanIndex(lookup);
+      invalidateFrom(0);
+    }
+    if (!state.isPreLayout()) {
+      applyPendingUpdates();
+    }
+    final int itemCount = state.getItemCount();
+    if (itemCount != mItemCount && !(observing && state.isPreLayout())) {
+      // Item count changed without notify, keep only positions not affected.
+      invalidateFrom(Math.min(itemCount, mItemCount));
+      mItemCount = itemCount;
+    }
+    ensureCapacity();
+    return true;
+  }
+
+  /**
+   * Stop observing the bound adapter and drop all descriptors, the table binds again on next
+   * {@link #bind}.
+   *
+   * @return number of descriptor bytes released.
+   */
+  int unbind() {
+    final RecyclerView.Adapter adapter = mAdapter != null ? mAdapter.get() : null;
+    if (adapter != null) {
+      adapter.unregisterAdapterDataObserver(this);
+    }
+    mAdapter = null;
+    mParent = null;
+    mLookup = null;
+    mItemCount = 0;
+    mPendingCount = 0;
+    final int released = mEntries.length * 2;
+    mEntries = new char[0];
+    mBase = 0;
+    mGeneration++;
+    return released;
+  }
+
+  private void ensureCapacity() {
+    final int length = mEntries.length;
+    if (mItemCount > length && length < MAX_ENTRIES) {
+      mEntries = Arrays.copyOf(mEntries,
+          Math.min(MAX_ENTRIES, Math.max(mItemCount, length + (length >> 1))));
+    }
+  }
+
+  /**
+   * @param invalidate true to invalidate parent item decorations on adapter changes, needed
+   * when item offsets are derived from the descriptors.
+   */
+  void setInvalidateItemDecorations(boolean invalidate) {
+    mInvalidateItemDecorations = invalidate;
+  }
+
+  /**
+   * @return counter that changes whenever resolved descriptors may have changed.
+   */
+  int getGeneration() {
+    return mGeneration;
+  }
+
+  /**
+   * @return mask of aspects to draw for adapter position, same bits as edge mask, or 0 if
+   * position is out of range.
+   */
+  int getAspects(int position) {
+    if (position < 0 || position >= mItemCount) {
+      return 0;
+    }
+    int index = position - mBase;
+    if (index < 0 || index >= mEntries.length) {
+      slideTo(position);
+      index = position - mBase;
+    }
+    int entry = mEntries[index];
+    if (entry == 0) {
+      final int spanIndex = getSpanIndex(position, index);
+      entry = mGeometry.resolveAspects(resolveEdges(position, spanIndex)) | RESOLVED;
+      if (mWalkSpanIndices) {
+        entry |= spanIndex << SPAN_INDEX_SHIFT;
+      }
+      mEntries[index] = (char) entry;
+    }
+    return entry & (RESOLVED - 1);
+  }
+
+  /**
+   * Resolve descriptor of position ahead of its first frame. Positions are skipped until the
+   * table is bound, or when they are out of range of the bound layout.
+   *
+   * @return true if the descriptor was resolved by this call.
+   */
+  boolean prefetch(int position) {
+    if (mLookup == null || position < 0 || position >= mItemCount) {
+      return false;
+    }
+    final int index = position - mBase;
+    if (index < 0 || index >= mEntries.length || mEntries[index] == 0) {
+      getAspects(position);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Center the window on position, entries still inside the window are kept.
+   */
+  private void slideTo(int position) {
+    final char[] entries = mEntries;
+    final int length = entries.length;
+    final int base = Math.max(0, Math.min(position - length / 2, mItemCount - length));
+    final int shift = base - mBase;
+    if (shift > 0 && shift < length) {
+      System.arraycopy(entries, shift, entries, 0, length - shift);
+      Arrays.fill(entries, length - shift, length, (char) 0);
+    } else if (shift < 0 && -shift < length) {
+      System.arraycopy(entries, 0, entries, -shift, length + shift);
+      Arrays.fill(entries, 0, -shift, (char) 0);
+    } else if (shift != 0) {
+      Arrays.fill(entries, (char) 0);
+    }
+    mBase = base;
+  }
+
+  /**
+   * @return whether lookup computes span indices itself, e.g. from its own data, so they must not
+   * be walked from span sizes.
+   */
+  private static boolean overridesSpanIndex(GridLayoutManager.SpanSizeLookup lookup) {
+    try {
+      return lookup.getClass().getMethod("getSpanIndex", int.class, int.class)
+          .getDeclaringClass() != GridLayoutManager.SpanSizeLookup.class;
+    } catch (NoSuchMethodException e) {
+      return true;
+    }
+  }
+
+  /**
+   * Span index of position, same rules as {@link GridLayoutManager.SpanSizeLookup#getSpanIndex}.
+   *
+   * @param index window index of position.
+   */
+  private int getSpanIndex(int position, int index) {
+    final GridLayoutManager.SpanSizeLookup lookup = mLookup;
+    final int spanCount = mSpanCount;
+    if (!mWalkSpanIndices || lookup.isSpanIndexCacheEnabled()) {
+      return lookup.getSpanIndex(position, spanCount);
+    }
+    final int itemSpanSize = lookup.getSpanSize(position);
+    if (itemSpanSize == spanCount) {
+      return 0;
+    }
+    int span = 0;
+    int start = 0;
+    // Walk on from the closest resolved entry, or from the first position.
+    for (int i = index - 1; i >= 0; i--) {
+      final int entry = mEntries[i];
+      if (entry != 0) {
+        final int previous = mBase + i;
+        span = (entry >>> SPAN_INDEX_SHIFT) + lookup.getSpanSize(previous);
+        start = previous + 1;
+        break;
+      }
+    }
+    for (int i = start; i < position; i++) {
+      final int size = lookup.getSpanSize(i);
+      span += size;
+      if (span == spanCount) {
+        span = 0;
+      } else if (span > spanCount) {
+        span = size;
+      }
+    }
+    return span + itemSpanSize <= spanCount ? span : 0;
+  }
+
+  private int resolveEdges(int position, int spanIndex) {
+    final int spanEnd = spanIndex + mLookup.getSpanSize(position);
+
+    final boolean spanStart = spanIndex == 0;
+    final boolean spanLast = spanEnd >= mSpanCount;
+    final boolean firstGroup = isInFirstGroup(position);
+    final boolean lastGroup = isInLastGroup(position, spanEnd);
+
+    return GridGeometry.edgesOf(mOrientation == LinearLayoutManager.VERTICAL, spanStart, spanLast,
+        firstGroup, lastGroup);
+  }
+
+  /**
+   * A position is in first span group if items before it all fit in one group without wrapping,
+   * at most span count items are visited.
+   */
+  private boolean isInFirstGroup(int position) {
+    if (position >= mSpanCount) {
+      return false;
+    }
+    int spanIndex = 0;
+    for (int i = 0; i <= position; i++) {
+      spanIndex += mLookup.getSpanSize(i);
+      if (spanIndex > mSpanCount) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A position is in last span group if items after it all fit in its group without wrapping,
+   * at most span count items are visited.
+   */
+  private boolean isInLastGroup(int position, int spanEnd) {
+    int spanIndex = spanEnd;
+    for (int i = position + 1; i < mItemCount; i++) {
+      spanIndex += mLookup.getSpanSize(i);
+      if (spanIndex > mSpanCount) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Whether span index of items after a range insertion or removal of count items is unchanged
+   * up to a whole number of groups, so their descriptors can be shifted instead of dropped.
+   */
+  private boolean isShiftable(int count) {
+    return mSpanCount == 1
+        || (mLookup instanceof GridLayoutManager.DefaultSpanSizeLookup
+        && count % mSpanCount == 0);
+  }
+
+  /**
+   * Drop resolved entries from position on. Last group of an item is decided by at most span
+   * count following items, so entries within one span count before position are dropped too.
+   */
+  private void invalidateFrom(int position) {
+    invalidateRange(position - mSpanCount, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Drop resolved entries of positions in [from, to).
+   */
+  private void invalidateRange(int from, int to) {
+    mGeneration++;
+    final int length = mEntries.length;
+    final int start = Math.max(0, from - mBase);
+    final int stop = (int) Math.min(length, (long) to - mBase);
+    if (start < stop) {
+      Arrays.fill(mEntries, start, stop, (char) 0);
+    }
+  }
+
+  /**
+   * RecyclerView keeps decoration insets of items not rebound, though an insertion or removal
+   * may move other items onto or off an edge.
+   */
+  private void invalidateItemDecorations() {
+    final RecyclerView parent = mParent != null ? mParent.get() : null;
+    if (mInvalidateItemDecorations && parent != null && !parent.isComputingLayout()) {
+      parent.invalidateItemDecorations();
+    }
+  }
+
+  private void applyChanged() {
+    invalidateFrom(0);
+  }
+
+  private void applyRangeChanged(int positionStart) {
+    invalidateFrom(positionStart);
+  }
+
+  private void applyInserted(int positionStart, int itemCount) {
+    mItemCount += itemCount;
+    ensureCapacity();
+    if (!isShiftable(itemCount)) {
+      invalidateFrom(positionStart);
+      return;
+    }
+    final char[] entries = mEntries;
+    final int length = entries.length;
+    final int index = positionStart - mBase;
+    if (index <= 0) {
+      // Whole window moves along.
+      mBase += itemCount;
+    } else if (index < length) {
+      if (index + itemCount < length) {
+        System.arraycopy(entries, index, entries, index + itemCount, length - index - itemCount);
+      }
+      Arrays.fill(entries, index, Math.min(length, index + itemCount), (char) 0);
+    }
+    // Neighbours may move onto or off first and last groups.
+    invalidateRange(positionStart - mSpanCount, positionStart + itemCount + mSpanCount);
+  }
+
+  private void applyRemoved(int positionStart, int itemCount) {
+    mItemCount = Math.max(0, mItemCount - itemCount);
+    if (!isShiftable(itemCount)) {
+      invalidateFrom(positionStart);
+      return;
+    }
+    final char[] entries = mEntries;
+    final int length = entries.length;
+    final int index = positionStart - mBase;
+    if (index + itemCount <= 0) {
+      // Whole window moves along.
+      mBase -= itemCount;
+    } else if (index < 0) {
+      // Removal overlaps window start.
+      Arrays.fill(entries, (char) 0);
+    } else if (index < length) {
+      final int source = index + itemCount;
+      if (source < length) {
+        System.arraycopy(entries, source, entries, index, length - source);
+      }
+      Arrays.fill(entries, Math.max(index, length - itemCount), length, (char) 0);
+    }
+    invalidateRange(positionStart - mSpanCount, positionStart + mSpanCount);
+  }
+
+  private void applyMoved(int fromPosition, int toPosition, int itemCount) {
+    final int start = Math.min(fromPosition, toPosition);
+    if (mSpanCount > 1 && !(mLookup instanceof GridLayoutManager.DefaultSpanSizeLookup)) {
+      // Mixed span sizes in a new order may rewrap all following groups.
+      invalidateFrom(start);
+    } else {
+      // Items between the two positions shift, items after them keep their spans.
+      invalidateRange(start - mSpanCount,
+          Math.max(fromPosition, toPosition) + itemCount + mSpanCount);
+    }
+  }
+
+  /**
+   * Apply notify events in the order they were sent, layout positions follow them from now on.
+   */
+  private void applyPendingUpdates() {
+    final int[] updates = mPendingUpdates;
+    final int count = mPendingCount;
+    mPendingCount = 0;
+    for (int i = 0; i < count; i += UPDATE_SIZE) {
+      switch (updates[i]) {
+        case UPDATE_CHANGED:
+          applyChanged();
+          break;
+        case UPDATE_RANGE_CHANGED:
+          applyRangeChanged(updates[i + 1]);
+          break;
+        case UPDATE_INSERTED:
+          applyInserted(updates[i + 1], updates[i + 3]);
+          break;
+        case UPDATE_REMOVED:
+          applyRemoved(updates[i + 1], updates[i + 3]);
+          break;
+        default:
+          applyMoved(updates[i + 1], updates[i + 2], updates[i + 3]);
+          break;
+      }
+    }
+  }
+
+  /**
+   * Queue a notify event until a layout pass consumes it, attached items rebind their insets in
+   * that pass.
+   */
+  private void enqueue(int type, int from, int to, int itemCount) {
+    if (mPendingCount == mPendingUpdates.length) {
+      // Too many updates before a layout, resolve all positions again.
+      mPendingCount = 0;
+      type = UPDATE_CHANGED;
+    }
+    final int[] updates = mPendingUpdates;
+    final int index = mPendingCount;
+    updates[index] = type;
+    updates[index + 1] = from;
+    updates[index + 2] = to;
+    updates[index + 3] = itemCount;
+    mPendingCount = index + UPDATE_SIZE;
+    invalidateItemDecorations();
+  }
+
+  @Override public void onChanged() {
+    // Earlier updates are covered by the full change.
+    mPendingCount = 0;
+    enqueue(UPDATE_CHANGED, 0, 0, 0);
+  }
+
+  @Override public void onItemRangeChanged(int positionStart, int itemCount) {
+    if (mLookup instanceof GridLayoutManager.DefaultSpanSizeLookup) {
+      // Uniform spans do not depend on item content.
+      return;
+    }
+    enqueue(UPDATE_RANGE_CHANGED, positionStart, positionStart, itemCount);
+  }
+
+  @Override public void onItemRangeInserted(int positionStart, int itemCount) {
+    enqueue(UPDATE_INSERTED, positionStart, positionStart, itemCount);
+  }
+
+  @Override public void onItemRangeRemoved(int positionStart, int itemCount) {
+    enqueue(UPDATE_REMOVED, positionStart, positionStart, itemCount);
+  }
+
+  @Override public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+    enqueue(UPDATE_MOVED, fromPosition, toPosition, itemCount);
+  }
+}
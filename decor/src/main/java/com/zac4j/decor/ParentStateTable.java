@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import java.util.WeakHashMap;
+
+/**
+ * Side table of decoration state kept across frames, one entry per {@link RecyclerView}, so one
+ * decoration instance can be attached to many recycler views at once.
+ *
+ * Parents are weakly keyed, and an entry is released as soon as its parent is detached from
+ * window, it is rebuilt on next draw if the parent comes back. States must not hold strong
+ * references to their parent, or they would keep it alive. Frame scratch data, e.g. segment
+ * buffers, stays on the decoration since draw passes never overlap.
+ */
+
+final class ParentStateTable<S extends ParentStateTable.State>
+    implements View.OnAttachStateChangeListener {
+
+  /**
+   * Per parent decoration state, trimmed on memory pressure while its parent is attached.
+   */
+  interface State extends DecorMemory.Trimmable {
+
+    /**
+     * Drop caches and unregister observers, the state is not used anymore.
+     */
+    void release();
+  }
+
+  /**
+   * Creates state for a parent seen for the first time.
+   */
+  interface Factory<S> {
+
+    S create();
+  }
+
+  private final Factory<S> mFactory;
+  private final WeakHashMap<RecyclerView, S> mStates = new WeakHashMap<>();
+
+  ParentStateTable(Factory<S> factory) {
+    mFactory = factory;
+  }
+
+  /**
+   * @return state of parent, created on first request.
+   */
+  S get(RecyclerView parent) {
+    S state = mStates.get(parent);
+    if (state == null) {
+      state = mFactory.create();
+      mStates.put(parent, state);
+      parent.addOnAttachStateChangeListener(this);
+    }
+    return state;
+  }
+
+  /**
+   * @return number of parents holding state.
+   */
+  int size() {
+    return mStates.size();
+  }
+
+  /**
+   * Trim state of all parents, see {@link DecorMemory}.
+   */
+  void trimMemory(int level) {
+    for (S state : mStates.values()) {
+      state.trimMemory(level);
+    }
+  }
+
+  @Override public void onViewAttachedToWindow(View view) {
+  }
+
+  @Override public void onViewDetachedFromWindow(View view) {
+    view.removeOnAttachStateChangeListener(this);
+    final S state = mStates.remove(view);
+    if (state != null) {
+      state.release();
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Canvas;
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+import com.zac4j.decor.geometry.SegmentBuffer;
+
+/**
+ * {@link DashRenderer} strokes lines with a {@link DashPathEffect}.
+ */
+
+final class PathEffectRenderer extends DashRenderer {
+
+  private final Paint mPaint;
+  private final float mPeriod;
+  private final int mDashGap;
+  private final int mDashLength;
+  private final int mDashThickness;
+  // Path effect of each whole pixel phase, filled on first phase change.
+  private DashPathEffect[] mPhaseEffects;
+  private int mPhase;
+
+  PathEffectRenderer(int dashGap, int dashLength, int dashThickness, int color) {
+    mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    mPaint.setColor(color);
+    mPaint.setStyle(Paint.Style.STROKE);
+    mPaint.setStrokeWidth(dashThickness);
+    mPaint.setPathEffect(new DashPathEffect(new float[] { dashLength, dashGap }, 0));
+    mPeriod = dashLength + dashGap;
+    mDashGap = dashGap;
+    mDashLength = dashLength;
+    mDashThickness = dashThickness;
+  }
+
+  @Override DashRenderer copy() {
+    final PathEffectRenderer copy =
+        new PathEffectRenderer(mDashGap, mDashLength, mDashThickness, mPaint.getColor());
+    copy.setThickness(getThickness());
+    copy.setPhase(mPhase);
+    return copy;
+  }
+
+  @Override int getColor() {
+    return mPaint.getColor();
+  }
+
+  @Override void setColor(int color) {
+    mPaint.setColor(color);
+  }
+
+  @Override void setAlpha(int alpha) {
+    mPaint.setAlpha(alpha);
+  }
+
+  @Override void setPhase(float phase) {
+    final int period = mDashLength + mDashGap;
+    final int wrapped = wrapPhase(phase, period);
+    if (wrapped == mPhase) {
+      return;
+    }
+    if (mPhaseEffects == null) {
+      // Path effects are immutable, build one per phase once instead of one per frame.
+      mPhaseEffects = new DashPathEffect[period];
+      final float[] intervals = { mDashLength, mDashGap };
+      for (int i = 0; i < period; i++) {
+        mPhaseEffects[i] = new DashPathEffect(intervals, i);
+      }
+    }
+    mPhase = wrapped;
+    mPaint.setPathEffect(mPhaseEffects[wrapped]);
+  }
+
+  @Override void setThickness(float thickness) {
+    mPaint.setStrokeWidth(thickness);
+  }
+
+  @Override float getThickness() {
+    return mPaint.getStrokeWidth();
+  }
+
+  @Override float getPeriod() {
+    return mPeriod;
+  }
+
+  @Override void drawLine(Canvas canvas, float startX, float startY, float stopX, float stopY) {
+    canvas.drawLine(startX, startY, stopX, stopY, mPaint);
+  }
+
+  @Override int drawLines(Canvas canvas, SegmentBuffer segments) {
+    if (segments.size() == 0) {
+      return 0;
+    }
+    canvas.drawLines(segments.getPoints(), 0, segments.size(), mPaint);
+    return 1;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+import com.zac4j.decor.geometry.SegmentBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves {@link DashRenderer#AUTO} to the fastest backend of the device for a dash style.
+ *
+ * Selection never blocks the caller: a style not resolved yet gets {@link DashRenderer#PATH_EFFECT}
+ * while a background task loads its persisted choice, or draws a grid of its dash lines into an
+ * offscreen canvas with each backend a few times and keeps the fastest. Decorations built after
+ * that use the result. Choices are persisted per style and system build, so they are measured
+ * again after OS or driver updates.
+ *
+ * The offscreen canvas is a software bitmap canvas, so the choice is a heuristic for hardware
+ * accelerated windows: it ranks the CPU cost of issuing each backend's draw operations, not GPU
+ * rasterization. Apps that profiled their dividers on target devices should pick a backend
+ * explicitly.
+ */
+
+final class RendererCalibration {
+
+  private static final String PREFS_NAME = "com.zac4j.decor.renderer";
+  private static final String KEY_FINGERPRINT = "fingerprint";
+  private static final String KEY_RENDERER_PREFIX = "renderer.";
+
+  private static final int[] CANDIDATES = {
+      DashRenderer.PATH_EFFECT, DashRenderer.SHADER, DashRenderer.BITMAP
+  };
+  // Offscreen canvas size and number of lines along each axis.
+  private static final int CANVAS_SIZE = 512;
+  private static final int LINE_COUNT = 32;
+  // Rounds not timed, lets lazy backend setup happen first.
+  private static final int WARM_UP_ROUNDS = 2;
+  private static final int TIMED_ROUNDS = 5;
+  // Idle time after which the calibration thread exits.
+  private static final long KEEP_ALIVE_SECONDS = 10;
+
+  // Renderers of styles resolved in this process, AUTO while resolving. Guarded by class lock.
+  private static final Map<String, Integer> sRenderers = new HashMap<>();
+  // Serial, calibrations of several styles do not compete with each other or with app tasks.
+  private static Executor sExecutor;
+
+  private RendererCalibration() {
+  }
+
+  /**
+   * @return renderer resolved for the dash style, or {@link DashRenderer#PATH_EFFECT} while it
+   * is being resolved in background.
+   */
+  static int select(Context context, final int dashGap, final int dashLength,
+      final int dashThickness, final int color) {
+    final String key = KEY_RENDERER_PREFIX + dashGap + ',' + dashLength + ',' + dashThickness
+        + ',' + Integer.toHexString(color);
+    synchronized (RendererCalibration.class) {
+      final Integer renderer = sRenderers.get(key);
+      if (renderer != null) {
+        return renderer != DashRenderer.AUTO ? renderer : DashRenderer.PATH_EFFECT;
+      }
+      sRenderers.put(key, DashRenderer.AUTO);
+    }
+    final Context appContext = context.getApplicationContext();
+    executor().execute(new Runnable() {
+      @Override public void run() {
+        final int renderer = resolve(appContext, key, dashGap, dashLength, dashThickness, color);
+        synchronized (RendererCalibration.class) {
+          sRenderers.put(key, renderer);
+        }
+      }
+    });
+    return DashRenderer.PATH_EFFECT;
+  }
+
+  private static synchronized Executor executor() {
+    if (sExecutor == null) {
+      final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS,
+          TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override public Thread newThread(Runnable runnable) {
+              final Thread thread = new Thread(runnable, "decor-renderer-calibration");
+              thread.setDaemon(true);
+              thread.setPriority(Thread.MIN_PRIORITY);
+              return thread;
+            }
+          });
+      executor.allowCoreThreadTimeOut(true);
+      sExecutor = executor;
+    }
+    return sExecutor;
+  }
+
+  /**
+   * @return persisted renderer of style, calibrated and persisted if none.
+   */
+  private static int resolve(Context context, String key, int dashGap, int dashLength,
+      int dashThickness, int color) {
+    final SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    final boolean sameBuild = Build.FINGERPRINT.equals(prefs.getString(KEY_FINGERPRINT, null));
+    if (sameBuild) {
+      final int renderer = prefs.getInt(key, DashRenderer.AUTO);
+      if (renderer != DashRenderer.AUTO && DashRenderer.isValid(renderer)) {
+        return renderer;
+      }
+    }
+    final int renderer = calibrate(dashGap, dashLength, dashThickness, color);
+    final SharedPreferences.Editor editor = prefs.edit();
+    if (!sameBuild) {
+      // Choices measured on another build are stale.
+      editor.clear();
+    }
+    editor.putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+        .putInt(key, renderer)
+        .apply();
+    return renderer;
+  }
+
+  private static int calibrate(int dashGap, int dashLength, int dashThickness, int color) {
+    final Bitmap bitmap = Bitmap.createBitmap(CANVAS_SIZE, CANVAS_SIZE, Bitmap.Config.ARGB_8888);
+    final Canvas canvas = new Canvas(bitmap);
+    final SegmentBuffer segments = new SegmentBuffer();
+    final float step = (float) CANVAS_SIZE / LINE_COUNT;
+    for (int i = 0; i < LINE_COUNT; i++) {
+      final float position = i * step + step / 2;
+      segments.add(0, position, CANVAS_SIZE, position);
+      segments.add(position, 0, position, CANVAS_SIZE);
+    }
+
+    int best = DashRenderer.PATH_EFFECT;
+    long bestNanos = Long.MAX_VALUE;
+    for (int candidate : CANDIDATES) {
+      final DashRenderer renderer =
+          DashRenderer.create(candidate, dashGap, dashLength, dashThickness, color);
+      renderer.prepare();
+      long nanos = Long.MAX_VALUE;
+      for (int round = 0; round < WARM_UP_ROUNDS + TIMED_ROUNDS; round++) {
+        final long start = System.nanoTime();
+        renderer.drawLines(canvas, segments);
+        final long elapsed = System.nanoTime() - start;
+        if (round >= WARM_UP_ROUNDS) {
+          nanos = Math.min(nanos, elapsed);
+        }
+      }
+      if (nanos < bestNanos) {
+        bestNanos = nanos;
+        best = candidate;
+      }
+    }
+    bitmap.recycle();
+    return best;
+  }
+}
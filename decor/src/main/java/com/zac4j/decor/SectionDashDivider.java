@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Trace;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.widget.LinearLayout;
+import com.zac4j.decor.geometry.ListGeometry;
+import com.zac4j.decor.geometry.SegmentBuffer;
+import com.zac4j.decor.geometry.SegmentCuller;
+
+/**
+ * Dash divider for linear layout manager with grouped items.
+ *
+ * Items are split into sections by their start positions. The divider after the last item of a
+ * section is drawn in a heavier section style, and optionally a sticky section divider is pinned
+ * to the leading edge of the list. Section lookups walk the visible children only, so per frame
+ * cost does not depend on adapter size.
+ */
+
+public class SectionDashDivider extends RecyclerView.ItemDecoration {
+
+  private static final String TRACE_SECTION = "SectionDashDivider#onDraw";
+  private static final String TRACE_SECTION_OVER = "SectionDashDivider#onDrawOver";
+
+  public static final int HORIZONTAL = LinearLayout.HORIZONTAL;
+  public static final int VERTICAL = LinearLayout.VERTICAL;
+
+  // Dash renderers of item and section dividers.
+  private final DashRenderer mRenderer;
+  private final DashRenderer mSectionRenderer;
+
+  /**
+   * Current orientation. Either {@link #HORIZONTAL} or {@link #VERTICAL}.
+   */
+  private int mOrientation;
+  private boolean mBatchDraw;
+  private boolean mSticky;
+  private boolean mReserveSpace;
+
+  private final SectionIndex mSections = new SectionIndex();
+
+  // Item and section dividers are culled against their own thickness and dash period.
+  private final SegmentBuffer mSegments = new SegmentBuffer();
+  private final SegmentCuller mCuller = new SegmentCuller();
+  private final ListGeometry mGeometry = new ListGeometry(mCuller);
+  private final SegmentBuffer mSectionSegments = new SegmentBuffer();
+  private final SegmentCuller mSectionCuller = new SegmentCuller();
+  private final ListGeometry mSectionGeometry = new ListGeometry(mSectionCuller);
+  private final SegmentBuffer mStickySegment = new SegmentBuffer();
+  private final Rect mClipBounds = new Rect();
+  // Draw metrics, null unless enabled.
+  private DrawMetrics mMetrics;
+
+  /**
+   * Creates a divider {@link RecyclerView.ItemDecoration} that can be used with a
+   * {@link LinearLayoutManager}.
+   *
+   * @param orientation Divider orientation. Should be {@link #HORIZONTAL} or {@link #VERTICAL}.
+   */
+  private SectionDashDivider(DashRenderer renderer, DashRenderer sectionRenderer, int orientation,
+      int[] sections, boolean sticky, boolean batchDraw, boolean reserveSpace) {
+    mRenderer = renderer;
+    mSectionRenderer = sectionRenderer;
+    mGeometry.setThickness(renderer.getThickness());
+    mGeometry.setReserveSpace(reserveSpace);
+    mSectionGeometry.setThickness(sectionRenderer.getThickness());
+    mSectionGeometry.setReserveSpace(reserveSpace);
+
+    setOrientation(orientation);
+    setSections(sections);
+    mSticky = sticky;
+    mBatchDraw = batchDraw;
+    mReserveSpace = reserveSpace;
+  }
+
+  /**
+   * Sets the orientation for this divider. This should be called if
+   * {@link RecyclerView.LayoutManager} changes orientation.
+   *
+   * @param orientation {@link #HORIZONTAL} or {@link #VERTICAL}
+   */
+  public void setOrientation(int orientation) {
+    if (orientation != HORIZONTAL && orientation != VERTICAL) {
+      throw new IllegalArgumentException(
+          "Invalid orientation. It should be either HORIZONTAL or VERTICAL");
+    }
+    mOrientation = orientation;
+    final int geometryOrientation =
+        orientation == VERTICAL ? ListGeometry.VERTICAL : ListGeometry.HORIZONTAL;
+    mGeometry.setOrientation(geometryOrientation);
+    mSectionGeometry.setOrientation(geometryOrientation);
+  }
+
+  /**
+   * Replace sections, call it whenever adapter data changes section boundaries. The array is
+   * copied.
+   *
+   * @param starts strictly ascending adapter positions of the first item of each section.
+   */
+  public void setSections(@NonNull int[] starts) {
+    if (starts == null) {
+      throw new IllegalArgumentException("starts == null");
+    }
+    mSections.set(starts);
+  }
+
+  public void setStickyEnabled(boolean sticky) {
+    mSticky = sticky;
+  }
+
+  public boolean isStickyEnabled() {
+    return mSticky;
+  }
+
+  /**
+   * Switch between batch draw and per line draw, the change takes effect on next frame.
+   *
+   * @param batchDraw true to draw all segments of a style with one {@link Canvas#drawLines} call.
+   */
+  public void setBatchDrawEnabled(boolean batchDraw) {
+    mBatchDraw = batchDraw;
+  }
+
+  public boolean isBatchDrawEnabled() {
+    return mBatchDraw;
+  }
+
+  /**
+   * Switch draw metrics collection, metrics are dropped when disabled.
+   */
+  public void setMetricsEnabled(boolean enabled) {
+    if (!enabled) {
+      mMetrics = null;
+    } else if (mMetrics == null) {
+      mMetrics = new DrawMetrics();
+    }
+  }
+
+  /**
+   * @return draw metrics of this decoration, or null if metrics are disabled.
+   */
+  public DrawMetrics getMetrics() {
+    return mMetrics;
+  }
+
+  @Override public void getItemOffsets(Rect outRect, View view, RecyclerView parent,
+      RecyclerView.State state) {
+    if (!mReserveSpace) {
+      outRect.set(0, 0, 0, 0);
+      return;
+    }
+    // Layout position, same as draw pass, so each divider is drawn into its own gutter.
+    final int position = parent.getChildLayoutPosition(view);
+    final int thickness = isSectionEnd(position)
+        ? mSectionGeometry.getInset()
+        : mGeometry.getInset();
+    if (mOrientation == VERTICAL) {
+      outRect.set(0, 0, 0, thickness);
+    } else {
+      outRect.set(0, 0, thickness, 0);
+    }
+  }
+
+  @Override public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
+    if (parent.getLayoutManager() == null) {
+      return;
+    }
+    Trace.beginSection(TRACE_SECTION);
+    try {
+      final DrawMetrics metrics = mMetrics;
+      final long sectionCulled = mSectionCuller.getCulledCount();
+      if (metrics != null) {
+        metrics.beginFrame(mCuller);
+      }
+      drawDividers(c, parent);
+      mRenderer.invalidateWhenLoaded(parent);
+      mSectionRenderer.invalidateWhenLoaded(parent);
+      if (metrics != null) {
+        // Section dividers are culled on their own.
+        metrics.addCulled((int) (mSectionCuller.getCulledCount() - sectionCulled));
+        metrics.endFrame(mCuller);
+      }
+    } finally {
+      Trace.endSection();
+    }
+  }
+
+  private void drawDividers(Canvas c, RecyclerView parent) {
+    if (c.getClipBounds(mClipBounds)) {
+      mCuller.begin(mClipBounds.left, mClipBounds.top, mClipBounds.right, mClipBounds.bottom,
+          mRenderer.getThickness(), mRenderer.getPeriod());
+      mSectionCuller.begin(mClipBounds.left, mClipBounds.top, mClipBounds.right,
+          mClipBounds.bottom, mSectionRenderer.getThickness(), mSectionRenderer.getPeriod());
+    } else {
+      mCuller.disable();
+      mSectionCuller.disable();
+    }
+    mSegments.reset();
+    mSectionSegments.reset();
+    final int childCount = parent.getChildCount();
+    for (int i = 0; i < childCount; i++) {
+      final View child = parent.getChildAt(i);
+      final RecyclerView.LayoutParams params = (RecyclerView.LayoutParams) child.getLayoutParams();
+      final boolean sectionEnd = isSectionEnd(params.getViewLayoutPosition());
+      final ListGeometry geometry = sectionEnd ? mSectionGeometry : mGeometry;
+      geometry.addItem(sectionEnd ? mSectionSegments : mSegments, child.getLeft(),
+          child.getTop(), child.getRight(), child.getBottom(), params.leftMargin,
+          params.topMargin, params.rightMargin, params.bottomMargin);
+    }
+    int drawCalls = draw(c, mRenderer, mSegments);
+    drawCalls += draw(c, mSectionRenderer, mSectionSegments);
+    if (mMetrics != null) {
+      mMetrics.addSegments(mSegments.segmentCount() + mSectionSegments.segmentCount());
+      mMetrics.addDrawCalls(drawCalls);
+    }
+  }
+
+  @Override public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
+    if (!mSticky || parent.getLayoutManager() == null || parent.getChildCount() == 0) {
+      return;
+    }
+    Trace.beginSection(TRACE_SECTION_OVER);
+    try {
+      drawSticky(c, parent);
+    } finally {
+      Trace.endSection();
+    }
+  }
+
+  private void drawSticky(Canvas c, RecyclerView parent) {
+    // First child is the leading one in layout order.
+    final View child = parent.getChildAt(0);
+    final RecyclerView.LayoutParams params = (RecyclerView.LayoutParams) child.getLayoutParams();
+    final int position = params.getViewLayoutPosition();
+    if (mSections.getSection(position) < 0) {
+      return;
+    }
+    final boolean vertical = mOrientation == VERTICAL;
+    final float thickness = mSectionRenderer.getThickness();
+    final boolean clipToPadding = parent.getClipToPadding();
+    final float edge = vertical
+        ? (clipToPadding ? parent.getPaddingTop() : 0)
+        : (clipToPadding ? parent.getPaddingLeft() : 0);
+    final float leading = vertical
+        ? child.getTop() - params.topMargin
+        : child.getLeft() - params.leftMargin;
+    if (mSections.isSectionStart(position) && leading >= edge) {
+      // Section head is fully shown, nothing is scrolled under the leading edge.
+      return;
+    }
+    float line = edge + thickness / 2;
+    if (isSectionEnd(position)) {
+      // Section divider of leading item pushes the sticky one out, it is centered in the gutter
+      // getItemOffsets reserves past the item margin.
+      final float gutterCenter = mSectionGeometry.getInset() / 2f;
+      final float trailing = vertical
+          ? child.getBottom() + params.bottomMargin + gutterCenter
+          : child.getRight() + params.rightMargin + gutterCenter;
+      line = Math.min(line, trailing - thickness);
+    }
+    mStickySegment.reset();
+    if (vertical) {
+      mStickySegment.add(parent.getPaddingLeft(), line,
+          parent.getWidth() - parent.getPaddingRight(), line);
+    } else {
+      mStickySegment.add(line, parent.getPaddingTop(), line,
+          parent.getHeight() - parent.getPaddingBottom());
+    }
+    mSectionRenderer.drawLines(c, mStickySegment);
+  }
+
+  private int draw(Canvas c, DashRenderer renderer, SegmentBuffer segments) {
+    return mBatchDraw ? renderer.drawLines(c, segments) : renderer.drawEach(c, segments);
+  }
+
+  // Whether item at position is the last one of its section.
+  private boolean isSectionEnd(int position) {
+    return position != RecyclerView.NO_POSITION && mSections.isSectionStart(position + 1);
+  }
+
+  public static Builder with(@NonNull Context context) {
+    if (context == null) {
+      throw new IllegalArgumentException("context == null");
+    }
+    return new Builder(context);
+  }
+
+  public static class Builder {
+    private Context context;
+    private int dashGap;
+    private int dashLength;
+    private int dashThickness;
+    private int color;
+    private int sectionDashGap;
+    private int sectionDashLength;
+    private int sectionDashThickness;
+    private int sectionColor;
+    private boolean sectionColorSet;
+    private int orientation = VERTICAL;
+    private int[] sections = new int[0];
+    private boolean sticky;
+    private boolean batchDraw;
+    private boolean reserveSpace;
+    private int renderer = DashRenderer.PATH_EFFECT;
+
+    public Builder(Context context) {
+      this.context = context;
+    }
+
+    public Builder dashGap(int gap) {
+      if (gap <= 0) {
+        throw new IllegalArgumentException("Dash gap must be greater than 0.");
+      }
+      this.dashGap = gap;
+      return this;
+    }
+
+    public Builder dashLength(int length) {
+      if (length <= 0) {
+        throw new IllegalArgumentException("Dash length must be greater than 0.");
+      }
+      this.dashLength = length;
+      return this;
+    }
+
+    public Builder dashThickness(int thickness) {
+      if (thickness <= 0) {
+        throw new IllegalArgumentException("Dash thickness must be greater than 0.");
+      }
+      this.dashThickness = thickness;
+      return this;
+    }
+
+    public Builder color(@ColorInt int color) {
+      this.color = color;
+      return this;
+    }
+
+    /**
+     * Dash gap of section dividers, defaults to item dash gap.
+     */
+    public Builder sectionDashGap(int gap) {
+      if (gap <= 0) {
+        throw new IllegalArgumentException("Section dash gap must be greater than 0.");
+      }
+      this.sectionDashGap = gap;
+      return this;
+    }
+
+    /**
+     * Dash length of section dividers, defaults to item dash length.
+     */
+    public Builder sectionDashLength(int length) {
+      if (length <= 0) {
+        throw new IllegalArgumentException("Section dash length must be greater than 0.");
+      }
+      this.sectionDashLength = length;
+      return this;
+    }
+
+    /**
+     * Dash thickness of section dividers, defaults to twice the item dash thickness.
+     */
+    public Builder sectionDashThickness(int thickness) {
+      if (thickness <= 0) {
+        throw new IllegalArgumentException("Section dash thickness must be greater than 0.");
+      }
+      this.sectionDashThickness = thickness;
+      return this;
+    }
+
+    /**
+     * Color of section dividers, defaults to item color.
+     */
+    public Builder sectionColor(@ColorInt int color) {
+      this.sectionColor = color;
+      this.sectionColorSet = true;
+      return this;
+    }
+
+    public Builder orientation(int orientation) {
+      if (orientation != HORIZONTAL && orientation != VERTICAL) {
+        throw new IllegalArgumentException("Illegal dashed divider orientation!");
+      }
+      this.orientation = orientation;
+      return this;
+    }
+
+    /**
+     * @param starts strictly ascending adapter positions of the first item of each section.
+     */
+    public Builder sections(@NonNull int[] starts) {
+      if (starts == null) {
+        throw new IllegalArgumentException("starts == null");
+      }
+      this.sections = starts;
+      return this;
+    }
+
+    /**
+     * Pin a section divider to the leading edge while a section is scrolled under it.
+     */
+    public Builder sticky(boolean sticky) {
+      this.sticky = sticky;
+      return this;
+    }
+
+    public Builder batchDraw(boolean batchDraw) {
+      this.batchDraw = batchDraw;
+      return this;
+    }
+
+    /**
+     * @param renderer {@link DashRenderer#PATH_EFFECT}, {@link DashRenderer#SHADER},
+     * {@link DashRenderer#BITMAP} or {@link DashRenderer#AUTO}
+     */
+    public Builder renderer(int renderer) {
+      if (!DashRenderer.isValid(renderer)) {
+        throw new IllegalArgumentException("Illegal dash renderer!");
+      }
+      this.renderer = renderer;
+      return this;
+    }
+
+    /**
+     * Reserve divider thickness after each item, so dividers never paint over item content.
+     */
+    public Builder reserveSpace(boolean reserveSpace) {
+      this.reserveSpace = reserveSpace;
+      return this;
+    }
+
+    public SectionDashDivider build() {
+      if (dashGap <= 0) {
+        throw new IllegalArgumentException("Dash gap must be greater than 0.");
+      }
+      if (dashLength <= 0) {
+        throw new IllegalArgumentException("Dash length must be greater than 0.");
+      }
+      if (dashThickness <= 0) {
+        throw new IllegalArgumentException("Dash thickness must be greater than 0.");
+      }
+      if (orientation != HORIZONTAL && orientation != VERTICAL) {
+        throw new IllegalArgumentException("Illegal dashed divider orientation!");
+      }
+      final int gap = sectionDashGap > 0 ? sectionDashGap : dashGap;
+      final int length = sectionDashLength > 0 ? sectionDashLength : dashLength;
+      final int thickness = sectionDashThickness > 0 ? sectionDashThickness : dashThickness * 2;
+      final int headColor = sectionColorSet ? sectionColor : color;
+      final int backend = renderer == DashRenderer.AUTO
+          ? RendererCalibration.select(context, dashGap, dashLength, dashThickness, color)
+          : renderer;
+      final int sectionBackend = renderer == DashRenderer.AUTO
+          ? RendererCalibration.select(context, gap, length, thickness, headColor)
+          : renderer;
+      DashStyle style = DashStyleCache.obtain(dashGap, dashLength, dashThickness, color, backend);
+      DashStyle sectionStyle =
+          DashStyleCache.obtain(gap, length, thickness, headColor, sectionBackend);
+      DecorMemory.install(context);
+      return new SectionDashDivider(style.getDashRenderer(), sectionStyle.getDashRenderer(),
+          orientation, sections, sticky, batchDraw, reserveSpace);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import java.util.Arrays;
+
+/**
+ * Sorted start positions of adapter sections.
+ *
+ * Lookups walk a cursor from the previous query, so visiting items in position order costs O(1)
+ * per item, other queries fall back to binary search. Cost never depends on adapter size.
+ */
+
+final class SectionIndex {
+
+  private int[] mStarts = new int[0];
+  // Lower bound of last queried position in mStarts.
+  private int mCursor;
+
+  /**
+   * @param starts strictly ascending, non negative start positions of sections.
+   */
+  void set(int[] starts) {
+    for (int i = 0; i < starts.length; i++) {
+      if (starts[i] < 0 || (i > 0 && starts[i] <= starts[i - 1])) {
+        throw new IllegalArgumentException(
+            "Section starts must be non negative and strictly ascending.");
+      }
+    }
+    mStarts = Arrays.copyOf(starts, starts.length);
+    mCursor = 0;
+  }
+
+  /**
+   * @return index of section holding position, -1 if position is before the first section.
+   */
+  int getSection(int position) {
+    final int index = lowerBound(position);
+    if (index < mStarts.length && mStarts[index] == position) {
+      return index;
+    }
+    return index - 1;
+  }
+
+  boolean isSectionStart(int position) {
+    final int index = lowerBound(position);
+    return index < mStarts.length && mStarts[index] == position;
+  }
+
+  /**
+   * @return index of first start not less than position.
+   */
+  private int lowerBound(int position) {
+    final int[] starts = mStarts;
+    final int count = starts.length;
+    int cursor = mCursor;
+    if (cursor > count || (cursor > 0 && starts[cursor - 1] >= position)) {
+      cursor = binarySearch(position);
+    } else {
+      // Walk forward from last query, a few steps at most while items are visited in order.
+      int steps = 0;
+      while (cursor < count && starts[cursor] < position) {
+        if (++steps > 4) {
+          cursor = binarySearch(position);
+          break;
+        }
+        cursor++;
+      }
+    }
+    mCursor = cursor;
+    return cursor;
+  }
+
+  private int binarySearch(int position) {
+    final int index = Arrays.binarySearch(mStarts, position);
+    return index >= 0 ? index : -index - 1;
+  }
+}
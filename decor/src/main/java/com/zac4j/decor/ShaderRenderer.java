@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import com.zac4j.decor.geometry.SegmentBuffer;
+
+/**
+ * {@link DashRenderer} pre-renders one dash period (length + gap) into a tiny alpha tile and fills
+ * divider rects with a repeating {@link BitmapShader}, so no path effect is tessellated when
+ * line lengths change.
+ *
+ * The shader is anchored at canvas origin, collinear segments therefore share one dash phase.
+ * Tiles are released on memory pressure and rendered again on next draw.
+ */
+
+final class ShaderRenderer extends DashRenderer implements DecorMemory.Trimmable {
+
+  private float mThickness;
+  private final float mPeriod;
+  private final int mDashGap;
+  private final int mDashLength;
+  private final int mDashThickness;
+  // Paint for horizontal segments, tile repeats along x.
+  private final Paint mHorizontalPaint;
+  // Paint for vertical segments, tile repeats along y.
+  private final Paint mVerticalPaint;
+  // Shifts tiles by dash phase, reused across phase changes.
+  private final Matrix mPhaseMatrix = new Matrix();
+  private int mPhase;
+  // Whether paints hold tile shaders, false until first draw and after trimming.
+  private boolean mHasTiles;
+
+  ShaderRenderer(int dashGap, int dashLength, int dashThickness, int color) {
+    mThickness = dashThickness;
+    mDashGap = dashGap;
+    mDashLength = dashLength;
+    mDashThickness = dashThickness;
+    mPeriod = dashLength + dashGap;
+    mHorizontalPaint = createTilePaint(color);
+    mVerticalPaint = createTilePaint(color);
+  }
+
+  /**
+   * Render a one period {@link Bitmap.Config#ALPHA_8} tile with an opaque dash at origin.
+   */
+  static Bitmap createTile(int width, int height, int dashWidth, int dashHeight) {
+    final Paint dashPaint = new Paint();
+    dashPaint.setStyle(Paint.Style.FILL);
+    final Bitmap tile = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+    new Canvas(tile).drawRect(0, 0, dashWidth, dashHeight, dashPaint);
+    return tile;
+  }
+
+  private static Paint createTilePaint(int color) {
+    Paint paint = new Paint();
+    paint.setStyle(Paint.Style.FILL);
+    paint.setColor(color);
+    return paint;
+  }
+
+  private static Shader createTileShader(Bitmap tile) {
+    return new BitmapShader(tile, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
+  }
+
+  @Override void prepare() {
+    ensureTiles();
+  }
+
+  private void ensureTiles() {
+    if (mHasTiles) {
+      return;
+    }
+    mHasTiles = true;
+    final int period = (int) mPeriod;
+    // Alpha only tiles, one byte per pixel, the paint color tints them.
+    mHorizontalPaint.setShader(createTileShader(
+        createTile(period, mDashThickness, mDashLength, mDashThickness)));
+    mVerticalPaint.setShader(createTileShader(
+        createTile(mDashThickness, period, mDashThickness, mDashLength)));
+    applyPhase();
+    DecorMemory.register(this);
+  }
+
+  @Override public void trimMemory(int level) {
+    if (!mHasTiles || !DecorMemory.releasesAll(level)) {
+      return;
+    }
+    mHasTiles = false;
+    mHorizontalPaint.setShader(null);
+    mVerticalPaint.setShader(null);
+    // Both tiles hold one period of one byte pixels.
+    DecorMemory.addReleasedBitmapBytes(2L * (int) mPeriod * mDashThickness);
+  }
+
+  @Override DashRenderer copy() {
+    final ShaderRenderer copy =
+        new ShaderRenderer(mDashGap, mDashLength, mDashThickness, getColor());
+    copy.setThickness(mThickness);
+    copy.setPhase(mPhase);
+    return copy;
+  }
+
+  @Override int getColor() {
+    return mHorizontalPaint.getColor();
+  }
+
+  @Override void setColor(int color) {
+    mHorizontalPaint.setColor(color);
+    mVerticalPaint.setColor(color);
+  }
+
+  @Override void setAlpha(int alpha) {
+    mHorizontalPaint.setAlpha(alpha);
+    mVerticalPaint.setAlpha(alpha);
+  }
+
+  @Override void setPhase(float phase) {
+    final int wrapped = wrapPhase(phase, (int) mPeriod);
+    if (wrapped == mPhase) {
+      return;
+    }
+    mPhase = wrapped;
+    if (mHasTiles) {
+      applyPhase();
+    }
+  }
+
+  private void applyPhase() {
+    mPhaseMatrix.setTranslate(-mPhase, 0);
+    mHorizontalPaint.getShader().setLocalMatrix(mPhaseMatrix);
+    mPhaseMatrix.setTranslate(0, -mPhase);
+    mVerticalPaint.getShader().setLocalMatrix(mPhaseMatrix);
+  }
+
+  @Override void setThickness(float thickness) {
+    // Dashes fill whole tile across the line, repeated tiles cover any thickness.
+    mThickness = thickness;
+  }
+
+  @Override float getThickness() {
+    return mThickness;
+  }
+
+  @Override float getPeriod() {
+    return mPeriod;
+  }
+
+  @Override void drawLine(Canvas canvas, float startX, float startY, float stopX, float stopY) {
+    ensureTiles();
+    final float half = mThickness / 2;
+    if (startY == stopY) {
+      canvas.drawRect(Math.min(startX, stopX), startY - half, Math.max(startX, stopX),
+          startY + half, mHorizontalPaint);
+    } else {
+      canvas.drawRect(startX - half, Math.min(startY, stopY), startX + half,
+          Math.max(startY, stopY), mVerticalPaint);
+    }
+  }
+
+  @Override int drawLines(Canvas canvas, SegmentBuffer segments) {
+    // Canvas has no batched rect call, fill one rect per segment.
+    return drawEach(canvas, segments);
+  }
+}
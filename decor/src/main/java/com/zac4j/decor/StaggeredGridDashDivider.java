@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Trace;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.StaggeredGridLayoutManager;
+import android.view.View;
+import com.zac4j.decor.geometry.SegmentBuffer;
+import com.zac4j.decor.geometry.SegmentCuller;
+import java.util.Arrays;
+
+/**
+ * Dash divider for staggered grid layout manager.
+ *
+ * Column dividers are tracked per span and drawn once per span as a continuous line over the
+ * extent of its attached items, instead of once per variable-size item. Full span items break
+ * the columns. Item dividers along the span axis are drawn per item.
+ *
+ * Aspects are named for {@link StaggeredGridLayoutManager#VERTICAL} orientation, with
+ * {@link StaggeredGridLayoutManager#HORIZONTAL} orientation the axes are transposed: left and
+ * top, right and bottom swap roles.
+ */
+
+public class StaggeredGridDashDivider extends RecyclerView.ItemDecoration {
+
+  private static final String TRACE_SECTION = "StaggeredGridDashDivider#onDraw";
+
+  // Dash divider render backend.
+  private DashRenderer mRenderer;
+  /**
+   * Draw divider strategy.
+   * Draw a grid item's left|top|right|bottom aspect divider
+   */
+  private boolean[] mDrawer;
+  /**
+   * Hide divider strategy:
+   * Hide left-most|top-most|right-most|bottom-most divider
+   */
+  private boolean[] mHider;
+  // View bounds container.
+  private final Rect mBounds = new Rect();
+  /**
+   * Whether collect segments and draw them with one {@link Canvas#drawLines} call per frame.
+   */
+  private boolean mBatchDraw;
+  // Draw metrics, null unless enabled.
+  private DrawMetrics mMetrics;
+  // Segments container, reused across frames.
+  private final SegmentBuffer mSegments = new SegmentBuffer();
+  // Culls segments out of canvas clip bounds.
+  private final SegmentCuller mCuller = new SegmentCuller();
+  private final Rect mClipBounds = new Rect();
+
+  // Orientation of current frame, line coordinates are emitted along it.
+  private boolean mVertical;
+  // Per span column extent along the scroll axis, start > stop marks an empty column.
+  private float[] mColumnStart = new float[0];
+  private float[] mColumnStop = new float[0];
+  // Per span column bounds across the scroll axis.
+  private float[] mColumnLeft = new float[0];
+  private float[] mColumnRight = new float[0];
+  // Per span first and last attached layout position.
+  private int[] mFirstPosition = new int[0];
+  private int[] mLastPosition = new int[0];
+
+  private StaggeredGridDashDivider(int dashGap, int dashLength, int dashThickness, int color,
+      boolean[] drawer, boolean[] hider, boolean batchDraw, int renderer) {
+    DashStyle style = DashStyleCache.obtain(dashGap, dashLength, dashThickness, color, renderer);
+    mRenderer = style.getDashRenderer();
+
+    mDrawer = drawer;
+    mHider = hider;
+    mBatchDraw = batchDraw;
+  }
+
+  /**
+   * Switch between batch draw and per line draw, the change takes effect on next frame.
+   *
+   * @param batchDraw true to draw all segments with one {@link Canvas#drawLines} call.
+   */
+  public void setBatchDrawEnabled(boolean batchDraw) {
+    mBatchDraw = batchDraw;
+  }
+
+  public boolean isBatchDrawEnabled() {
+    return mBatchDraw;
+  }
+
+  /**
+   * @return number of divider segments skipped for being out of canvas clip bounds.
+   */
+  public long getCulledSegmentCount() {
+    return mCuller.getCulledCount();
+  }
+
+  /**
+   * @return number of divider segments shortened to canvas clip bounds.
+   */
+  public long getTrimmedSegmentCount() {
+    return mCuller.getTrimmedCount();
+  }
+
+  /**
+   * Switch draw metrics collection, metrics are dropped when disabled.
+   */
+  public void setMetricsEnabled(boolean enabled) {
+    if (!enabled) {
+      mMetrics = null;
+    } else if (mMetrics == null) {
+      mMetrics = new DrawMetrics();
+    }
+  }
+
+  /**
+   * @return draw metrics of this decoration, or null if metrics are disabled.
+   */
+  public DrawMetrics getMetrics() {
+    return mMetrics;
+  }
+
+  @Override public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
+    if (!(parent.getLayoutManager() instanceof StaggeredGridLayoutManager)) {
+      return;
+    }
+    final StaggeredGridLayoutManager layoutManager =
+        (StaggeredGridLayoutManager) parent.getLayoutManager();
+    final int spanCount = layoutManager.getSpanCount();
+    mVertical = layoutManager.getOrientation() == StaggeredGridLayoutManager.VERTICAL;
+    ensureSpanCapacity(spanCount);
+
+    Trace.beginSection(TRACE_SECTION);
+    try {
+      final DrawMetrics metrics = mMetrics;
+      if (metrics != null) {
+        metrics.beginFrame(mCuller);
+      }
+      if (c.getClipBounds(mClipBounds)) {
+        mCuller.begin(mClipBounds.left, mClipBounds.top, mClipBounds.right, mClipBounds.bottom,
+            mRenderer.getThickness(), mRenderer.getPeriod());
+      } else {
+        mCuller.disable();
+      }
+      mSegments.reset();
+      drawDividers(c, parent, state.getItemCount(), spanCount);
+      final int drawCalls = mBatchDraw
+          ? mRenderer.drawLines(c, mSegments)
+          : mRenderer.drawEach(c, mSegments);
+      mRenderer.invalidateWhenLoaded(parent);
+      if (metrics != null) {
+        metrics.addSegments(mSegments.segmentCount());
+        metrics.addDrawCalls(drawCalls);
+        metrics.endFrame(mCuller);
+      }
+    } finally {
+      Trace.endSection();
+    }
+  }
+
+  private void drawDividers(Canvas canvas, RecyclerView parent, int itemCount, int spanCount) {
+    final int childCount = parent.getChildCount();
+
+    // Find first and last attached item of each span, to tell top-most and bottom-most items.
+    Arrays.fill(mFirstPosition, 0, spanCount, Integer.MAX_VALUE);
+    Arrays.fill(mLastPosition, 0, spanCount, RecyclerView.NO_POSITION);
+    int minPosition = Integer.MAX_VALUE;
+    int maxPosition = RecyclerView.NO_POSITION;
+    for (int i = 0; i < childCount; i++) {
+      final View child = parent.getChildAt(i);
+      final int position = parent.getChildLayoutPosition(child);
+      if (position == RecyclerView.NO_POSITION) {
+        continue;
+      }
+      minPosition = Math.min(minPosition, position);
+      maxPosition = Math.max(maxPosition, position);
+      final StaggeredGridLayoutManager.LayoutParams params =
+          (StaggeredGridLayoutManager.LayoutParams) child.getLayoutParams();
+      if (!params.isFullSpan() && !isValidSpan(params.getSpanIndex(), spanCount)) {
+        continue;
+      }
+      final int fromSpan = params.isFullSpan() ? 0 : params.getSpanIndex();
+      final int toSpan = params.isFullSpan() ? spanCount : params.getSpanIndex() + 1;
+      for (int span = fromSpan; span < toSpan; span++) {
+        mFirstPosition[span] = Math.min(mFirstPosition[span], position);
+        mLastPosition[span] = Math.max(mLastPosition[span], position);
+      }
+    }
+    if (maxPosition == RecyclerView.NO_POSITION) {
+      return;
+    }
+    // Top-most and bottom-most items are only known when list start or end is attached.
+    final boolean atStart = minPosition == 0;
+    final boolean atEnd = maxPosition == itemCount - 1;
+
+    resetColumns(spanCount);
+    final float thickness = mRenderer.getThickness();
+    for (int i = 0; i < childCount; i++) {
+      final View child = parent.getChildAt(i);
+      final int position = parent.getChildLayoutPosition(child);
+      if (position == RecyclerView.NO_POSITION) {
+        continue;
+      }
+      final StaggeredGridLayoutManager.LayoutParams params =
+          (StaggeredGridLayoutManager.LayoutParams) child.getLayoutParams();
+      final int span = params.getSpanIndex();
+      final boolean fullSpan = params.isFullSpan();
+      if (!fullSpan && !isValidSpan(span, spanCount)) {
+        continue;
+      }
+      parent.getLayoutManager().getDecoratedBoundsWithMargins(child, mBounds);
+      final float tx = child.getTranslationX();
+      final float ty = child.getTranslationY();
+      // Bounds along (start, stop) and across (left, right) the scroll axis.
+      final float start = mVertical ? mBounds.top + ty : mBounds.left + tx;
+      final float stop = mVertical ? mBounds.bottom + ty : mBounds.right + tx;
+      final float left = mVertical ? mBounds.left + tx : mBounds.top + ty;
+      final float right = mVertical ? mBounds.right + tx : mBounds.bottom + ty;
+
+      final boolean topMost = atStart && (fullSpan ? position == minPosition
+          : position == mFirstPosition[span]);
+      final boolean bottomMost = atEnd && (fullSpan ? position == maxPosition
+          : position == mLastPosition[span]);
+
+      if (fullSpan) {
+        // Full span item lays out below every column, close columns and draw its own sides.
+        flushColumns(canvas, spanCount);
+        if (mDrawer[0] && !mHider[0]) {
+          drawMainAxisLine(canvas, left + thickness, start, stop);
+        }
+        if (mDrawer[2] && !mHider[2]) {
+          drawMainAxisLine(canvas, right - thickness, start, stop);
+        }
+      } else {
+        mColumnStart[span] = Math.min(mColumnStart[span], start);
+        mColumnStop[span] = Math.max(mColumnStop[span], stop);
+        mColumnLeft[span] = left;
+        mColumnRight[span] = right;
+      }
+
+      // Draw bottom divider, hidden for bottom-most item if needed.
+      if (mDrawer[3] && !(mHider[3] && bottomMost)) {
+        drawCrossAxisLine(canvas, stop - thickness, left, right);
+      }
+      // Draw top divider, only for top-most item when bottom divider is drawn to avoid over draw.
+      if (mDrawer[1] && (!mDrawer[3] || topMost) && !(mHider[1] && topMost)) {
+        drawCrossAxisLine(canvas, start + thickness, left, right);
+      }
+    }
+    flushColumns(canvas, spanCount);
+  }
+
+  /**
+   * @return false for {@link StaggeredGridLayoutManager.LayoutParams#INVALID_SPAN_ID}, e.g. a
+   * child added by an animation before its span is assigned.
+   */
+  private static boolean isValidSpan(int span, int spanCount) {
+    return span >= 0 && span < spanCount;
+  }
+
+  private void ensureSpanCapacity(int spanCount) {
+    if (mColumnStart.length < spanCount) {
+      mColumnStart = new float[spanCount];
+      mColumnStop = new float[spanCount];
+      mColumnLeft = new float[spanCount];
+      mColumnRight = new float[spanCount];
+      mFirstPosition = new int[spanCount];
+      mLastPosition = new int[spanCount];
+    }
+  }
+
+  private void resetColumns(int spanCount) {
+    Arrays.fill(mColumnStart, 0, spanCount, Float.MAX_VALUE);
+    Arrays.fill(mColumnStop, 0, spanCount, -Float.MAX_VALUE);
+  }
+
+  /**
+   * Draw one continuous divider per span column tracked so far, then reset the columns.
+   */
+  private void flushColumns(Canvas canvas, int spanCount) {
+    final float thickness = mRenderer.getThickness();
+    for (int span = 0; span < spanCount; span++) {
+      final float start = mColumnStart[span];
+      final float stop = mColumnStop[span];
+      if (start > stop) {
+        continue;
+      }
+      // Right divider of the span, hidden for right-most span if needed.
+      if (mDrawer[2] && !(mHider[2] && span == spanCount - 1)) {
+        drawMainAxisLine(canvas, mColumnRight[span] - thickness, start, stop);
+      }
+      // Left divider, only for left-most span when right divider is drawn to avoid over draw.
+      if (mDrawer[0] && (!mDrawer[2] || span == 0) && !(mHider[0] && span == 0)) {
+        drawMainAxisLine(canvas, mColumnLeft[span] + thickness, start, stop);
+      }
+    }
+    resetColumns(spanCount);
+  }
+
+  /**
+   * Draw a line along the scroll axis, e.g. a column divider of vertical layout.
+   */
+  private void drawMainAxisLine(Canvas canvas, float cross, float start, float stop) {
+    if (mVertical) {
+      drawLine(canvas, cross, start, cross, stop);
+    } else {
+      drawLine(canvas, start, cross, stop, cross);
+    }
+  }
+
+  /**
+   * Draw a line across the scroll axis, e.g. an item bottom divider of vertical layout.
+   */
+  private void drawCrossAxisLine(Canvas canvas, float main, float left, float right) {
+    if (mVertical) {
+      drawLine(canvas, left, main, right, main);
+    } else {
+      drawLine(canvas, main, left, main, right);
+    }
+  }
+
+  private void drawLine(Canvas canvas, float startX, float startY, float stopX, float stopY) {
+    mCuller.add(mSegments, startX, startY, stopX, stopY);
+  }
+
+  public static Builder with(@NonNull Context context) {
+    if (context == null) {
+      throw new IllegalArgumentException("context == null");
+    }
+    return new Builder(context);
+  }
+
+  public static class Builder {
+    private Context context;
+    private int dashGap;
+    private int dashLength;
+    private int dashThickness;
+    private int color;
+    private boolean[] drawer = new boolean[4];
+    private boolean[] hider = new boolean[4];
+    private boolean batchDraw;
+    private int renderer = DashRenderer.PATH_EFFECT;
+
+    public Builder(Context context) {
+      this.context = context;
+    }
+
+    public Builder dashGap(int gap) {
+      if (gap <= 0) {
+        throw new IllegalArgumentException("Dash gap must be greater than 0.");
+      }
+      this.dashGap = gap;
+      return this;
+    }
+
+    public Builder dashLength(int length) {
+      if (length <= 0) {
+        throw new IllegalArgumentException("Dash length must be greater than 0.");
+      }
+      this.dashLength = length;
+      return this;
+    }
+
+    public Builder dashThickness(int thickness) {
+      if (thickness <= 0) {
+        throw new IllegalArgumentException("Dash thickness must be greater than 0.");
+      }
+      this.dashThickness = thickness;
+      return this;
+    }
+
+    public Builder color(@ColorInt int color) {
+      this.color = color;
+      return this;
+    }
+
+    public Builder drawer(boolean left, boolean top, boolean right, boolean bottom) {
+      this.drawer = new boolean[] { left, top, right, bottom };
+      return this;
+    }
+
+    public Builder hider(boolean left, boolean top, boolean right, boolean bottom) {
+      this.hider = new boolean[] { left, top, right, bottom };
+      return this;
+    }
+
+    public Builder batchDraw(boolean batchDraw) {
+      this.batchDraw = batchDraw;
+      return this;
+    }
+
+    /**
+     * @param renderer {@link DashRenderer#PATH_EFFECT}, {@link DashRenderer#SHADER},
+     * {@link DashRenderer#BITMAP} or {@link DashRenderer#AUTO}
+     */
+    public Builder renderer(int renderer) {
+      if (!DashRenderer.isValid(renderer)) {
+        throw new IllegalArgumentException("Illegal dash renderer!");
+      }
+      this.renderer = renderer;
+      return this;
+    }
+
+    public StaggeredGridDashDivider build() {
+      if (dashGap <= 0) {
+        throw new IllegalArgumentException("Dash gap must be greater than 0.");
+      }
+      if (dashLength <= 0) {
+        throw new IllegalArgumentException("Dash length must be greater than 0.");
+      }
+      if (dashThickness <= 0) {
+        throw new IllegalArgumentException("Dash thickness must be greater than 0.");
+      }
+      final int backend = renderer == DashRenderer.AUTO
+          ? RendererCalibration.select(context, dashGap, dashLength, dashThickness, color)
+          : renderer;
+      DecorMemory.install(context);
+      return new StaggeredGridDashDivider(dashGap, dashLength, dashThickness, color, drawer, hider,
+          batchDraw, backend);
+    }
+  }
+}
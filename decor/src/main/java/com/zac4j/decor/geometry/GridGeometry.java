@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor.geometry;
+
+/**
+ * Platform independent segment math of grid dividers.
+ *
+ * Turns grid item bounds, edges and drawer/hider/offset strategies into divider segments. Item
+ * edges are a mask of {@link #EDGE_LEFT}, {@link #EDGE_TOP}, {@link #EDGE_RIGHT} and
+ * {@link #EDGE_BOTTOM} telling which grid border the item lies on.
+ */
+
+public final class GridGeometry {
+
+  public static final int EDGE_LEFT = 1;
+  public static final int EDGE_TOP = 1 << 1;
+  public static final int EDGE_RIGHT = 1 << 2;
+  public static final int EDGE_BOTTOM = 1 << 3;
+
+  /**
+   * Draw divider strategy.
+   * Draw a grid item's left|top|right|bottom aspect divider
+   */
+  private final boolean[] mDrawer;
+  /**
+   * Hide divider strategy:
+   * Hide left-most|top-most|right-most|bottom-most divider
+   */
+  private final boolean[] mHider;
+  /**
+   * Set divider offset strategy.
+   * Set grid item's left|top|right|bottom aspect divider line offset
+   */
+  private final float[] mOffset;
+
+  // Line thickness in pixels.
+  private float mThickness;
+  // Distance from item bounds edge inward to line center.
+  private float mInset;
+  // Whether lines are centered in gutters reserved out of item content.
+  private boolean mReserveSpace;
+
+  private final SegmentCuller mCuller;
+
+  /**
+   * @param culler culls segments before they are added to output buffer.
+   */
+  public GridGeometry(boolean[] drawer, boolean[] hider, float[] offset, SegmentCuller culler) {
+    mDrawer = drawer;
+    mHider = hider;
+    mOffset = offset;
+    mCuller = culler;
+  }
+
+  /**
+   * @param thickness line thickness in pixels.
+   * @param inset distance from item bounds edge inward to line center.
+   */
+  public void setThickness(float thickness, float inset) {
+    mThickness = thickness;
+    mInset = inset;
+  }
+
+  public float getThickness() {
+    return mThickness;
+  }
+
+  /**
+   * @param reserveSpace true if item offsets reserve line thickness, lines are then centered in
+   * the gutters between item content bounds and item bounds.
+   */
+  public void setReserveSpace(boolean reserveSpace) {
+    mReserveSpace = reserveSpace;
+  }
+
+  public boolean isReserveSpace() {
+    return mReserveSpace;
+  }
+
+  /**
+   * Edge mask of a grid item from its span info.
+   *
+   * @param vertical true if the grid scrolls vertically, spans then run left to right.
+   * @param spanStart item starts at span index 0.
+   * @param spanLast item ends at the last span.
+   * @param firstGroup item is in the first span group.
+   * @param lastGroup item is in the last span group.
+   */
+  public static int edgesOf(boolean vertical, boolean spanStart, boolean spanLast,
+      boolean firstGroup, boolean lastGroup) {
+    if (vertical) {
+      return (spanStart ? EDGE_LEFT : 0)
+          | (spanLast ? EDGE_RIGHT : 0)
+          | (firstGroup ? EDGE_TOP : 0)
+          | (lastGroup ? EDGE_BOTTOM : 0);
+    }
+    return (spanStart ? EDGE_TOP : 0)
+        | (spanLast ? EDGE_BOTTOM : 0)
+        | (firstGroup ? EDGE_LEFT : 0)
+        | (lastGroup ? EDGE_RIGHT : 0);
+  }
+
+  /**
+   * Resolve which aspects of a grid item should be drawn.
+   *
+   * @param edges edge mask of the item.
+   * @return mask of aspects to draw, same bits as edge mask.
+   */
+  public int resolveAspects(int edges) {
+    final boolean[] drawer = mDrawer;
+    final boolean[] hider = mHider;
+    int aspects = 0;
+    // Left divider is owned by right divider of previous item, unless item is left-most.
+    if (drawer[0] && (!drawer[2] || (edges & EDGE_LEFT) != 0)
+        && !(hider[0] && (edges & EDGE_LEFT) != 0)) {
+      aspects |= EDGE_LEFT;
+    }
+    // Top divider is owned by bottom divider of previous item, unless item is top-most.
+    if (drawer[1] && (!drawer[3] || (edges & EDGE_TOP) != 0)
+        && !(hider[1] && (edges & EDGE_TOP) != 0)) {
+      aspects |= EDGE_TOP;
+    }
+    if (drawer[2] && !(hider[2] && (edges & EDGE_RIGHT) != 0)) {
+      aspects |= EDGE_RIGHT;
+    }
+    if (drawer[3] && !(hider[3] && (edges & EDGE_BOTTOM) != 0)) {
+      aspects |= EDGE_BOTTOM;
+    }
+    return aspects;
+  }
+
+  /**
+   * Item offsets reserving line thickness for each drawn aspect.
+   *
+   * @param aspects mask from {@link #resolveAspects(int)}
+   * @param outInsets left, top, right, bottom insets in pixels.
+   */
+  public void getInsets(int aspects, int[] outInsets) {
+    final int thickness = (int) Math.ceil(mThickness);
+    outInsets[0] = (aspects & EDGE_LEFT) != 0 ? thickness : 0;
+    outInsets[1] = (aspects & EDGE_TOP) != 0 ? thickness : 0;
+    outInsets[2] = (aspects & EDGE_RIGHT) != 0 ? thickness : 0;
+    outInsets[3] = (aspects & EDGE_BOTTOM) != 0 ? thickness : 0;
+  }
+
+  /**
+   * Add divider segments of one grid item.
+   *
+   * @param out segment buffer to append to.
+   * @param aspects mask from {@link #resolveAspects(int)}
+   * @param left item bounds including decoration insets and margins, when space is reserved
+   * lines are centered in the gutters at their edges.
+   * @param translationX item translation x, lines move along with the item.
+   * @param translationY item translation y, lines move along with the item.
+   * @return number of segments added.
+   */
+  public int addItem(SegmentBuffer out, int aspects, float left, float top, float right,
+      float bottom, float translationX, float translationY) {
+    return addItem(out, mCuller, aspects, left, top, right, bottom, translationX, translationY);
+  }
+
+  /**
+   * Add divider segments of one grid item, culled by the given culler instead of the one of this
+   * geometry.
+   *
+   * @see #addItem(SegmentBuffer, int, float, float, float, float, float, float)
+   */
+  public int addItem(SegmentBuffer out, SegmentCuller culler, int aspects, float left, float top,
+      float right, float bottom, float translationX, float translationY) {
+    // Reserved gutters are the outermost insets of the bounds, past item margins.
+    final float gutterCenter = (float) Math.ceil(mThickness) / 2;
+    int added = 0;
+    if ((aspects & (EDGE_TOP | EDGE_BOTTOM)) != 0) {
+      final float startX = left + translationX + mOffset[0];
+      final float stopX = right + translationX - mOffset[2];
+      // Bottom divider, hidden for bottom-most item if needed.
+      if ((aspects & EDGE_BOTTOM) != 0) {
+        final float bottomY = mReserveSpace
+            ? bottom + translationY - gutterCenter
+            : bottom + translationY - mInset;
+        added += culler.add(out, startX, bottomY, stopX, bottomY) ? 1 : 0;
+      }
+      // Top divider, only for top-most item when bottom divider is drawn to avoid over draw.
+      if ((aspects & EDGE_TOP) != 0) {
+        final float topY = mReserveSpace
+            ? top + translationY + gutterCenter
+            : top + translationY + mInset;
+        added += culler.add(out, startX, topY, stopX, topY) ? 1 : 0;
+      }
+    }
+    if ((aspects & (EDGE_LEFT | EDGE_RIGHT)) != 0) {
+      final float startY = top + translationY + mOffset[1];
+      final float stopY = bottom + translationY - mOffset[3];
+      // Right divider, hidden for right-most item if needed.
+      if ((aspects & EDGE_RIGHT) != 0) {
+        final float rightX = mReserveSpace
+            ? right + translationX - gutterCenter
+            : right + translationX - mInset;
+        added += culler.add(out, rightX, startY, rightX, stopY) ? 1 : 0;
+      }
+      // Left divider, only for left-most item when right divider is drawn to avoid over draw.
+      if ((aspects & EDGE_LEFT) != 0) {
+        final float leftX = mReserveSpace
+            ? left + translationX + gutterCenter
+            : left + translationX + mInset;
+        added += culler.add(out, leftX, startY, leftX, stopY) ? 1 : 0;
+      }
+    }
+    return added;
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor.geometry;
+
+import java.util.Arrays;
+
+/**
+ * Caches static divider segments of grid items between frames.
+ *
+ * Entries are keyed by child index and validated against the item layout position and bounds,
+ * so items that keep their layout reuse their segments while others, e.g. items moved by an item
+ * animator, are recomputed. Segments are cached untranslated and unculled, they are culled when
+ * copied out.
+ */
+
+public final class GridSegmentCache {
+
+  // Never begun, so it lets all segments pass.
+  private final SegmentCuller mNoCuller = new SegmentCuller();
+  private final GridGeometry mGeometry;
+
+  private Generation mCurrent = new Generation();
+  private Generation mNext = new Generation();
+  // Key of data the cached segments were derived from, e.g. edge table generation.
+  private int mKey;
+
+  private long mHitCount;
+  private long mMissCount;
+
+  /**
+   * @param geometry computes static segments of resting items.
+   */
+  public GridSegmentCache(GridGeometry geometry) {
+    mGeometry = geometry;
+  }
+
+  /**
+   * Start a frame.
+   *
+   * @param childCount number of children to be visited.
+   * @param key key of data segments are derived from, cache is dropped if it changed.
+   */
+  public void begin(int childCount, int key) {
+    if (key != mKey) {
+      mKey = key;
+      mCurrent.clear();
+    }
+    mNext.clear();
+    mNext.ensureCapacity(childCount);
+  }
+
+  /**
+   * Copy cached segments of child to output if its layout position and bounds are unchanged.
+   *
+   * @return false on cache miss, nothing is added.
+   */
+  public boolean addCached(int index, int position, float left, float top, float right,
+      float bottom, SegmentCuller culler, SegmentBuffer out) {
+    if (!mCurrent.matches(index, position, left, top, right, bottom)) {
+      mMissCount++;
+      return false;
+    }
+    mHitCount++;
+    final int start = mCurrent.mStart[index];
+    final int stop = mCurrent.mStop[index];
+    final float[] points = mCurrent.mSegments.getPoints();
+    mNext.put(index, position, left, top, right, bottom);
+    for (int i = start; i < stop; i += 4) {
+      mNext.mSegments.add(points[i], points[i + 1], points[i + 2], points[i + 3]);
+      culler.add(out, points[i], points[i + 1], points[i + 2], points[i + 3]);
+    }
+    mNext.mStop[index] = mNext.mSegments.size();
+    return true;
+  }
+
+  /**
+   * Compute static segments of a resting child, cache them and add them to output.
+   *
+   * @see GridGeometry#addItem
+   */
+  public void addStatic(int index, int position, int aspects, float left, float top, float right,
+      float bottom, SegmentCuller culler, SegmentBuffer out) {
+    mNext.put(index, position, left, top, right, bottom);
+    final SegmentBuffer segments = mNext.mSegments;
+    final int start = segments.size();
+    mGeometry.addItem(segments, mNoCuller, aspects, left, top, right, bottom, 0, 0);
+    final float[] points = segments.getPoints();
+    final int stop = segments.size();
+    for (int i = start; i < stop; i += 4) {
+      culler.add(out, points[i], points[i + 1], points[i + 2], points[i + 3]);
+    }
+    mNext.mStop[index] = stop;
+  }
+
+  /**
+   * Finish a frame, entries not visited in this frame are dropped.
+   */
+  public void end() {
+    final Generation current = mCurrent;
+    mCurrent = mNext;
+    mNext = current;
+  }
+
+  /**
+   * Drop all cached segments.
+   */
+  public void invalidate() {
+    mCurrent.clear();
+  }
+
+  /**
+   * Drop all cached segments and their backing arrays, they grow again on next frames.
+   *
+   * @return number of bytes released.
+   */
+  public int release() {
+    return mCurrent.release() + mNext.release();
+  }
+
+  public long getHitCount() {
+    return mHitCount;
+  }
+
+  public long getMissCount() {
+    return mMissCount;
+  }
+
+  /**
+   * Cached segments of one frame, child index keyed entries into one segment buffer.
+   */
+  private static final class Generation {
+
+    private static final int NO_POSITION = -1;
+
+    private final SegmentBuffer mSegments = new SegmentBuffer();
+    // Layout position of child at index, NO_POSITION for no entry.
+    private int[] mPosition = new int[0];
+    // Item bounds of child at index, 4 floats per child.
+    private float[] mBounds = new float[0];
+    // Segment range of child at index in the buffer.
+    private int[] mStart = new int[0];
+    private int[] mStop = new int[0];
+
+    void clear() {
+      mSegments.reset();
+      Arrays.fill(mPosition, NO_POSITION);
+    }
+
+    int release() {
+      final int released = (mPosition.length + mBounds.length + mStart.length + mStop.length) * 4
+          + mSegments.release();
+      mPosition = new int[0];
+      mBounds = new float[0];
+      mStart = new int[0];
+      mStop = new int[0];
+      return released;
+    }
+
+    void ensureCapacity(int childCount) {
+      if (childCount > mPosition.length) {
+        final int length = mPosition.length;
+        mPosition = Arrays.copyOf(mPosition, childCount);
+        Arrays.fill(mPosition, length, childCount, NO_POSITION);
+        mBounds = Arrays.copyOf(mBounds, childCount * 4);
+        mStart = Arrays.copyOf(mStart, childCount);
+        mStop = Arrays.copyOf(mStop, childCount);
+      }
+    }
+
+    boolean matches(int index, int position, float left, float top, float right,
+        float bottom) {
+      if (index >= mPosition.length || mPosition[index] != position || position == NO_POSITION) {
+        return false;
+      }
+      final int i = index * 4;
+      return mBounds[i] == left
+          && mBounds[i + 1] == top
+          && mBounds[i + 2] == right
+          && mBounds[i + 3] == bottom;
+    }
+
+    void put(int index, int position, float left, float top, float right, float bottom) {
+      mPosition[index] = position;
+      final int i = index * 4;
+      mBounds[i] = left;
+      mBounds[i + 1] = top;
+      mBounds[i + 2] = right;
+      mBounds[i + 3] = bottom;
+      mStart[index] = mSegments.size();
+      mStop[index] = mStart[index];
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor.geometry;
+
+/**
+ * Platform independent segment math of linear list dividers, one divider after each item.
+ */
+
+public final class ListGeometry {
+
+  public static final int HORIZONTAL = 0;
+  public static final int VERTICAL = 1;
+
+  // Current orientation. Either HORIZONTAL or VERTICAL.
+  private int mOrientation = VERTICAL;
+  // Line thickness in pixels.
+  private float mThickness;
+  // Whether lines are centered in gutters reserved after item content.
+  private boolean mReserveSpace;
+
+  private final SegmentCuller mCuller;
+
+  /**
+   * @param culler culls segments before they are added to output buffer.
+   */
+  public ListGeometry(SegmentCuller culler) {
+    mCuller = culler;
+  }
+
+  public void setOrientation(int orientation) {
+    mOrientation = orientation;
+  }
+
+  public void setThickness(float thickness) {
+    mThickness = thickness;
+  }
+
+  public void setReserveSpace(boolean reserveSpace) {
+    mReserveSpace = reserveSpace;
+  }
+
+  /**
+   * @return item offset after each item reserving line thickness, 0 if space is not reserved.
+   */
+  public int getInset() {
+    return mReserveSpace ? (int) Math.ceil(mThickness) : 0;
+  }
+
+  /**
+   * Add the divider segment after one list item.
+   *
+   * @param out segment buffer to append to.
+   * @param left item content bounds.
+   * @param leftMargin item margins, when space is reserved lines are centered in the gutters
+   * past them.
+   * @return number of segments added.
+   */
+  public int addItem(SegmentBuffer out, float left, float top, float right, float bottom,
+      float leftMargin, float topMargin, float rightMargin, float bottomMargin) {
+    final boolean added;
+    // Reserved gutter starts after the item margin.
+    final float gutterCenter = getInset() / 2f;
+    if (mOrientation == VERTICAL) {
+      final float y = bottom + bottomMargin + gutterCenter;
+      added = mCuller.add(out, left - leftMargin, y, right + rightMargin, y);
+    } else {
+      final float x = right + rightMargin + gutterCenter;
+      added = mCuller.add(out, x, top - topMargin, x, bottom + bottomMargin);
+    }
+    return added ? 1 : 0;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor.geometry;
+
+/**
+ * Reusable line segment container, laid out as {@code x0, y0, x1, y1} quadruples so the
+ * whole buffer can be handed to {@code Canvas#drawLines(float[], int, int, Paint)}.
+ */
+
+public final class SegmentBuffer {
+
+  // Initial capacity in segments, enough for a typical screen of grid cells.
+  private static final int INITIAL_CAPACITY = 64;
+  // Max distance in pixels between two collinear segments to be merged.
+  private static final float MERGE_SLOP = 0.5f;
+  // Number of most recent runs searched for a merge candidate, segments come in layout order so
+  // the run of same row or column is always close.
+  private static final int MERGE_WINDOW = 64;
+
+  private float[] mPoints = new float[INITIAL_CAPACITY * 4];
+  // Number of floats in use, always a multiple of 4.
+  private int mSize;
+
+  /**
+   * Clears the buffer, keeps the backing array for the next frame.
+   */
+  public void reset() {
+    mSize = 0;
+  }
+
+  /**
+   * Clears the buffer and shrinks the backing array to initial capacity.
+   *
+   * @return number of bytes released.
+   */
+  public int release() {
+    mSize = 0;
+    final int released = (mPoints.length - INITIAL_CAPACITY * 4) * 4;
+    if (released > 0) {
+      mPoints = new float[INITIAL_CAPACITY * 4];
+    }
+    return Math.max(0, released);
+  }
+
+  public void add(float startX, float startY, float stopX, float stopY) {
+    if (mSize + 4 > mPoints.length) {
+      float[] points = new float[mPoints.length * 2];
+      System.arraycopy(mPoints, 0, points, 0, mSize);
+      mPoints = points;
+    }
+    mPoints[mSize++] = startX;
+    mPoints[mSize++] = startY;
+    mPoints[mSize++] = stopX;
+    mPoints[mSize++] = stopY;
+  }
+
+  /**
+   * @return backing array, only the first {@link #size()} floats are valid.
+   */
+  public float[] getPoints() {
+    return mPoints;
+  }
+
+  /**
+   * @return number of floats in use.
+   */
+  public int size() {
+    return mSize;
+  }
+
+  public int segmentCount() {
+    return mSize >> 2;
+  }
+
+  /**
+   * Merge collinear horizontal or vertical segments that touch or overlap into one longer
+   * segment, in place. Duplicated segments of shared edges collapse into one as well.
+   *
+   * @return number of segments removed by merging.
+   */
+  public int coalesce() {
+    final float[] points = mPoints;
+    final int size = mSize;
+    int out = 0;
+    for (int i = 0; i < size; i += 4) {
+      final boolean horizontal = points[i + 1] == points[i + 3];
+      final float fixed = horizontal ? points[i + 1] : points[i];
+      final float start = horizontal ? Math.min(points[i], points[i + 2])
+          : Math.min(points[i + 1], points[i + 3]);
+      final float stop = horizontal ? Math.max(points[i], points[i + 2])
+          : Math.max(points[i + 1], points[i + 3]);
+
+      boolean merged = false;
+      final int windowStart = Math.max(0, out - MERGE_WINDOW * 4);
+      for (int k = out - 4; k >= windowStart; k -= 4) {
+        final boolean runHorizontal = points[k + 1] == points[k + 3];
+        if (runHorizontal != horizontal) {
+          continue;
+        }
+        if (horizontal) {
+          if (points[k + 1] == fixed && points[k] <= stop + MERGE_SLOP
+              && points[k + 2] >= start - MERGE_SLOP) {
+            points[k] = Math.min(points[k], start);
+            points[k + 2] = Math.max(points[k + 2], stop);
+            merged = true;
+            break;
+          }
+        } else if (points[k] == fixed && points[k + 1] <= stop + MERGE_SLOP
+            && points[k + 3] >= start - MERGE_SLOP) {
+          points[k + 1] = Math.min(points[k + 1], start);
+          points[k + 3] = Math.max(points[k + 3], stop);
+          merged = true;
+          break;
+        }
+      }
+      if (!merged) {
+        // Write back as a new run in normalized start <= stop order, out never passes i.
+        if (horizontal) {
+          points[out] = start;
+          points[out + 1] = fixed;
+          points[out + 2] = stop;
+          points[out + 3] = fixed;
+        } else {
+          points[out] = fixed;
+          points[out + 1] = start;
+          points[out + 2] = fixed;
+          points[out + 3] = stop;
+        }
+        out += 4;
+      }
+    }
+    mSize = out;
+    return (size - out) >> 2;
+  }
+}
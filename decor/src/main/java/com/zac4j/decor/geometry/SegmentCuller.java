@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor.geometry;
+
+/**
+ * Culls divider segments against clip bounds set once per frame.
+ *
+ * Segments fully out of clip are skipped, segments partly out of clip are trimmed in whole dash
+ * periods so the visible dash phase stays unchanged.
+ */
+
+public final class SegmentCuller {
+
+  private float mClipLeft;
+  private float mClipTop;
+  private float mClipRight;
+  private float mClipBottom;
+  // False when clip is unknown, e.g. recording a display list, all segments pass.
+  private boolean mEnabled;
+  // Half line thickness, segments are stroked around their coordinates.
+  private float mHalfThickness;
+  // Dash period in pixels for trimming, 0 disables trimming.
+  private float mPeriod;
+
+  private long mCulledCount;
+  private long mTrimmedCount;
+
+  // Segment container for culling, reused across segments.
+  private final float[] mSegment = new float[4];
+
+  /**
+   * Set clip bounds for current frame.
+   *
+   * @param thickness line thickness in pixels.
+   * @param period dash period (length + gap) in pixels, 0 if segments must not be trimmed.
+   */
+  public void begin(float left, float top, float right, float bottom, float thickness,
+      float period) {
+    mEnabled = true;
+    mClipLeft = left;
+    mClipTop = top;
+    mClipRight = right;
+    mClipBottom = bottom;
+    mHalfThickness = thickness / 2;
+    mPeriod = period;
+  }
+
+  /**
+   * Let all segments pass for current frame, e.g. when clip is unknown or content is replayed
+   * later at another offset.
+   */
+  public void disable() {
+    mEnabled = false;
+  }
+
+  /**
+   * Cull and trim a segment, then append it to buffer if visible.
+   *
+   * @return false if the segment is out of clip and was not added.
+   */
+  public boolean add(SegmentBuffer out, float startX, float startY, float stopX, float stopY) {
+    final float[] segment = mSegment;
+    segment[0] = startX;
+    segment[1] = startY;
+    segment[2] = stopX;
+    segment[3] = stopY;
+    if (!clip(segment)) {
+      return false;
+    }
+    out.add(segment[0], segment[1], segment[2], segment[3]);
+    return true;
+  }
+
+  /**
+   * Cull and trim a horizontal or vertical segment in place.
+   *
+   * @param segment start x, start y, stop x, stop y of the segment.
+   * @return false if the segment is out of clip and must not be drawn.
+   */
+  public boolean clip(float[] segment) {
+    if (!mEnabled) {
+      return true;
+    }
+    final float left = Math.min(segment[0], segment[2]) - mHalfThickness;
+    final float top = Math.min(segment[1], segment[3]) - mHalfThickness;
+    final float right = Math.max(segment[0], segment[2]) + mHalfThickness;
+    final float bottom = Math.max(segment[1], segment[3]) + mHalfThickness;
+    if (right <= mClipLeft || left >= mClipRight
+        || bottom <= mClipTop || top >= mClipBottom) {
+      mCulledCount++;
+      return false;
+    }
+    if (mPeriod <= 0) {
+      return true;
+    }
+    boolean trimmed;
+    if (segment[1] == segment[3]) {
+      trimmed = trim(segment, 0, mClipLeft, mClipRight);
+    } else {
+      trimmed = trim(segment, 1, mClipTop, mClipBottom);
+    }
+    if (trimmed) {
+      mTrimmedCount++;
+    }
+    return true;
+  }
+
+  /**
+   * Trim segment along one axis to clip range, start moves forward in whole dash periods.
+   */
+  private boolean trim(float[] segment, int axis, float clipStart, float clipStop) {
+    final int startIndex = segment[axis] <= segment[axis + 2] ? axis : axis + 2;
+    final int stopIndex = startIndex == axis ? axis + 2 : axis;
+    final float start = segment[startIndex];
+    final float stop = segment[stopIndex];
+    boolean trimmed = false;
+    if (start < clipStart - mPeriod) {
+      segment[startIndex] = start + (float) Math.floor((clipStart - start) / mPeriod) * mPeriod;
+      trimmed = true;
+    }
+    if (stop > clipStop + mHalfThickness) {
+      segment[stopIndex] = clipStop + mHalfThickness;
+      trimmed = true;
+    }
+    return trimmed;
+  }
+
+  /**
+   * @return number of segments skipped for being out of clip bounds.
+   */
+  public long getCulledCount() {
+    return mCulledCount;
+  }
+
+  /**
+   * @return number of segments shortened to clip bounds.
+   */
+  public long getTrimmedCount() {
+    return mTrimmedCount;
+  }
+}
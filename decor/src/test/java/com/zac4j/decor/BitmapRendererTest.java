@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Color;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.zac4j.decor.DecorHarness.HEIGHT;
+import static com.zac4j.decor.DecorHarness.WIDTH;
+import static com.zac4j.decor.DecorHarness.drawFrame;
+import static com.zac4j.decor.DecorHarness.layout;
+import static com.zac4j.decor.DecorHarness.stateOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Frames drawn by the {@link BitmapRenderer} fallback are redrawn once its tiles are ready.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25, manifest = Config.NONE)
+public class BitmapRendererTest {
+
+  private static final int SPAN_COUNT = 4;
+  private static final int ITEM_COUNT = 1000;
+
+  @Test public void viewsDrawnByFallbackAreInvalidatedOnceLoaded() {
+    final BitmapRenderer renderer = new BitmapRenderer(3, 5, 2, Color.GRAY);
+    final CountingView view = new CountingView();
+    renderer.invalidateWhenLoaded(view);
+    assertEquals(0, view.mInvalidations);
+    renderer.prepare();
+    assertEquals(1, view.mInvalidations);
+    // Loaded renderers draw tiles themselves.
+    renderer.invalidateWhenLoaded(view);
+    assertEquals(1, view.mInvalidations);
+  }
+
+  @Test public void fallbackRecordingsAreRecordedAgainOnceLoaded() {
+    // Style of its own, so its tiles are not rendered by other tests.
+    final GridDashDivider divider = GridDashDivider.with(RuntimeEnvironment.application)
+        .dashGap(7)
+        .dashLength(3)
+        .dashThickness(2)
+        .color(Color.BLUE)
+        .drawer(true, true, true, true)
+        .hider(false, false, false, false)
+        .offset(0, 0, 0, 0)
+        .renderer(DashRenderer.BITMAP)
+        .cacheDisplayList(true)
+        .build();
+    divider.setMetricsEnabled(true);
+    final DashRenderer renderer =
+        DashStyleCache.obtain(7, 3, 2, Color.BLUE, DashRenderer.BITMAP).getDashRenderer();
+    final RecyclerView parent =
+        layout(new GridLayoutManager(RuntimeEnvironment.application, SPAN_COUNT), ITEM_COUNT);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+
+    assertFalse(renderer.isLoaded());
+    drawFrame(divider, parent, stateOf(parent), canvas);
+    renderer.prepare();
+    assertTrue(renderer.isLoaded());
+    drawFrame(divider, parent, stateOf(parent), canvas);
+    assertFalse(divider.getMetrics().isLastFrameReplayed());
+    drawFrame(divider, parent, stateOf(parent), canvas);
+    assertTrue(divider.getMetrics().isLastFrameReplayed());
+  }
+
+  private static final class CountingView extends View {
+
+    int mInvalidations;
+
+    CountingView() {
+      super(RuntimeEnvironment.application);
+    }
+
+    @Override public void postInvalidateOnAnimation() {
+      mInvalidations++;
+    }
+  }
+}
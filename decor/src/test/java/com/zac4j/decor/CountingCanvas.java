@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import com.zac4j.decor.geometry.SegmentBuffer;
+
+/**
+ * Canvas counting draw operations instead of rasterizing them. Clip bounds are the whole canvas
+ * unless set, lines are recorded, so tests can check where dividers land.
+ */
+
+final class CountingCanvas extends Canvas {
+
+  private final int mWidth;
+  private final int mHeight;
+  private final Rect mClip = new Rect();
+
+  int mLineCalls;
+  int mLinesCalls;
+  int mRectCalls;
+  int mBitmapCalls;
+  int mPictureCalls;
+  // Lines drawn since last reset, one segment per line.
+  final SegmentBuffer mLines = new SegmentBuffer();
+
+  CountingCanvas(int width, int height) {
+    mWidth = width;
+    mHeight = height;
+    mClip.set(0, 0, width, height);
+  }
+
+  /**
+   * Set clip bounds reported to decorations, drawing itself is not clipped.
+   */
+  void setClip(int left, int top, int right, int bottom) {
+    mClip.set(left, top, right, bottom);
+  }
+
+  void reset() {
+    mLineCalls = 0;
+    mLinesCalls = 0;
+    mRectCalls = 0;
+    mBitmapCalls = 0;
+    mPictureCalls = 0;
+    mLines.reset();
+  }
+
+  /**
+   * @return number of draw operations since last reset.
+   */
+  int getDrawCalls() {
+    return mLineCalls + mLinesCalls + mRectCalls + mBitmapCalls + mPictureCalls;
+  }
+
+  @Override public int getWidth() {
+    return mWidth;
+  }
+
+  @Override public int getHeight() {
+    return mHeight;
+  }
+
+  @Override public boolean isHardwareAccelerated() {
+    return false;
+  }
+
+  @Override public boolean getClipBounds(Rect bounds) {
+    bounds.set(mClip);
+    return !mClip.isEmpty();
+  }
+
+  @Override public void drawLine(float startX, float startY, float stopX, float stopY,
+      Paint paint) {
+    mLineCalls++;
+    mLines.add(startX, startY, stopX, stopY);
+  }
+
+  @Override public void drawLines(float[] pts, int offset, int count, Paint paint) {
+    mLinesCalls++;
+    for (int i = offset; i < offset + count; i += 4) {
+      mLines.add(pts[i], pts[i + 1], pts[i + 2], pts[i + 3]);
+    }
+  }
+
+  @Override public void drawLines(float[] pts, Paint paint) {
+    drawLines(pts, 0, pts.length, paint);
+  }
+
+  @Override public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+    mRectCalls++;
+  }
+
+  @Override public void drawRect(RectF rect, Paint paint) {
+    mRectCalls++;
+  }
+
+  @Override public void drawRect(Rect rect, Paint paint) {
+    mRectCalls++;
+  }
+
+  @Override public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+    mBitmapCalls++;
+  }
+
+  @Override public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+    mBitmapCalls++;
+  }
+
+  @Override public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+    mBitmapCalls++;
+  }
+
+  @Override public void drawPicture(Picture picture) {
+    mPictureCalls++;
+  }
+}
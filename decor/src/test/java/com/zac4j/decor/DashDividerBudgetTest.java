@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.zac4j.decor.DecorHarness.HEIGHT;
+import static com.zac4j.decor.DecorHarness.ITEM_COUNTS;
+import static com.zac4j.decor.DecorHarness.ITEM_HEIGHT;
+import static com.zac4j.decor.DecorHarness.WIDTH;
+import static com.zac4j.decor.DecorHarness.allocatedBytesPerFrame;
+import static com.zac4j.decor.DecorHarness.drawFrame;
+import static com.zac4j.decor.DecorHarness.isAllocationCountingSupported;
+import static com.zac4j.decor.DecorHarness.layout;
+import static com.zac4j.decor.DecorHarness.stateOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Draw call and allocation budgets of {@link DashDivider}.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25, manifest = Config.NONE)
+public class DashDividerBudgetTest {
+
+  // Bytes a steady state frame may allocate, only covers measurement noise.
+  private static final long ALLOCATION_BUDGET = 16;
+  // One divider per item on screen, plus one partly shown item.
+  private static final int MAX_VISIBLE_DIVIDERS = HEIGHT / ITEM_HEIGHT + 1;
+
+  private static DashDivider.Builder divider() {
+    return DashDivider.with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(2)
+        .color(Color.GRAY);
+  }
+
+  private static RecyclerView list(int itemCount) {
+    return layout(new LinearLayoutManager(RuntimeEnvironment.application), itemCount);
+  }
+
+  @Test public void batchDrawIssuesOneDrawCallPerFrame() {
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = list(itemCount);
+      final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+      final int drawCalls =
+          drawFrame(divider().batchDraw(true).build(), parent, stateOf(parent), canvas);
+      assertEquals("items: " + itemCount, 1, drawCalls);
+      assertEquals("items: " + itemCount, 1, canvas.mLinesCalls);
+    }
+  }
+
+  @Test public void perLineDrawIsBoundedByVisibleItems() {
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = list(itemCount);
+      final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+      final int drawCalls = drawFrame(divider().build(), parent, stateOf(parent), canvas);
+      assertTrue("items: " + itemCount, drawCalls <= parent.getChildCount());
+      assertTrue("items: " + itemCount, drawCalls <= MAX_VISIBLE_DIVIDERS);
+    }
+  }
+
+  @Test public void dividersOutOfClipAreCulled() {
+    final RecyclerView parent = list(1000);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    final DashDivider divider = divider().build();
+    divider.setMetricsEnabled(true);
+    drawFrame(divider, parent, stateOf(parent), canvas);
+    final int segments = divider.getMetrics().getLastFrameSegments();
+
+    canvas.setClip(0, HEIGHT / 2, WIDTH, HEIGHT);
+    final int drawCalls = drawFrame(divider, parent, stateOf(parent), canvas);
+    final int culled = divider.getMetrics().getLastFrameCulled();
+    assertTrue(culled > 0);
+    assertEquals(segments, divider.getMetrics().getLastFrameSegments() + culled);
+    assertEquals(segments - culled, drawCalls);
+  }
+
+  @Test public void itemStylesIssueOneDrawCallPerDistinctPaint() {
+    // Style 3 looks like the default style, so they share one paint.
+    final DashDivider divider = divider()
+        .style(1, 4, 4, 2, Color.RED)
+        .style(2, 4, 4, 2, Color.GREEN)
+        .style(3, 4, 4, 2, Color.GRAY)
+        .styleResolver(new DashDivider.StyleResolver() {
+          @Override public int getStyle(int position) {
+            return position % 4;
+          }
+        })
+        .batchDraw(true)
+        .build();
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = list(itemCount);
+      final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+      assertEquals("items: " + itemCount, 3,
+          drawFrame(divider, parent, stateOf(parent), canvas));
+    }
+  }
+
+  @Test public void undefinedStylesFollowMutatedDefaultStyle() {
+    // Style 1 is not registered and draws with the default style.
+    final DashDivider divider = divider()
+        .style(2, 4, 4, 2, Color.RED)
+        .styleResolver(new DashDivider.StyleResolver() {
+          @Override public int getStyle(int position) {
+            return position % 3;
+          }
+        })
+        .batchDraw(true)
+        .build();
+    final RecyclerView parent = list(100);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    assertEquals(2, drawFrame(divider, parent, stateOf(parent), canvas));
+    divider.setColor(Color.GREEN);
+    assertEquals(2, drawFrame(divider, parent, stateOf(parent), canvas));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void undefinedStylesAreNotMutated() {
+    divider().style(2, 4, 4, 2, Color.RED).build().setColor(1, Color.GREEN);
+  }
+
+  @Test public void steadyFramesDoNotAllocate() {
+    assumeTrue(isAllocationCountingSupported());
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = list(itemCount);
+      assertAllocationBudget("batch, items: " + itemCount,
+          allocatedBytesPerFrame(divider().batchDraw(true).build(), parent));
+      assertAllocationBudget("per line, items: " + itemCount,
+          allocatedBytesPerFrame(divider().build(), parent));
+      assertAllocationBudget("reserve space, items: " + itemCount,
+          allocatedBytesPerFrame(divider().reserveSpace(true).build(), parent));
+    }
+  }
+
+  @Test public void animatedPropertiesDoNotAllocate() {
+    assumeTrue(isAllocationCountingSupported());
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = list(itemCount);
+      assertAllocationBudget("path effect, items: " + itemCount, allocatedBytesPerFrame(
+          new Animator(divider().batchDraw(true).build()), parent));
+      assertAllocationBudget("shader, items: " + itemCount, allocatedBytesPerFrame(
+          new Animator(divider().renderer(DashRenderer.SHADER).build()), parent));
+      assertAllocationBudget("bitmap, items: " + itemCount, allocatedBytesPerFrame(
+          new Animator(divider().renderer(DashRenderer.BITMAP).build()), parent));
+    }
+  }
+
+  @Test public void animatedPropertiesLeaveSharedStyleUntouched() {
+    final DashDivider animated = divider().build();
+    animated.setColor(Color.RED);
+    animated.setAlpha(128);
+    animated.setDashPhase(3);
+    animated.setDashThickness(6);
+    final DashRenderer shared =
+        DashStyleCache.obtain(4, 4, 2, Color.GRAY, DashRenderer.PATH_EFFECT).getDashRenderer();
+    assertEquals(Color.GRAY, shared.getColor());
+    assertEquals(2, shared.getThickness(), 0);
+  }
+
+  private static void assertAllocationBudget(String message, long bytesPerFrame) {
+    assertTrue(message + ", allocated " + bytesPerFrame + " bytes per frame",
+        bytesPerFrame <= ALLOCATION_BUDGET);
+  }
+
+  /**
+   * Animates all divider properties once per frame, like a value animator would.
+   */
+  private static final class Animator extends RecyclerView.ItemDecoration {
+
+    private final DashDivider mDivider;
+    private int mFrame;
+
+    Animator(DashDivider divider) {
+      mDivider = divider;
+    }
+
+    @Override public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
+      mFrame++;
+      mDivider.setDashPhase(mFrame);
+      mDivider.setAlpha(mFrame & 0xFF);
+      mDivider.setColor(mFrame % 2 == 0 ? Color.RED : Color.GREEN);
+      mDivider.setDashThickness(1 + mFrame % 3);
+      mDivider.onDraw(c, parent, state);
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Lays out a {@link RecyclerView} off screen and drives decoration frames against it.
+ */
+
+final class DecorHarness {
+
+  static final int WIDTH = 480;
+  static final int HEIGHT = 800;
+  static final int ITEM_HEIGHT = 40;
+
+  // Adapter sizes from less than one screen to far more than fits on screen.
+  static final int[] ITEM_COUNTS = { 8, 100, 1000, 100000 };
+
+  // Frames drawn before measuring, so lazily grown buffers and caches reach steady state.
+  private static final int WARM_UP_FRAMES = 32;
+  private static final int MEASURED_FRAMES = 256;
+
+  private DecorHarness() {
+    throw new AssertionError("No instances.");
+  }
+
+  /**
+   * @return recycler view measured and laid out with itemCount fixed height items.
+   */
+  static RecyclerView layout(RecyclerView.LayoutManager layoutManager, int itemCount) {
+    return layout(layoutManager, itemCount, 0);
+  }
+
+  /**
+   * @param margin layout margin of items on every side.
+   * @param decorations attached before layout, so their item offsets take part in it.
+   * @return recycler view measured and laid out with itemCount fixed height items.
+   */
+  static RecyclerView layout(RecyclerView.LayoutManager layoutManager, int itemCount, int margin,
+      RecyclerView.ItemDecoration... decorations) {
+    return layout(layoutManager, new ItemAdapter(itemCount, margin), decorations);
+  }
+
+  /**
+   * @return recycler view measured and laid out with items of adapter.
+   */
+  static RecyclerView layout(RecyclerView.LayoutManager layoutManager,
+      RecyclerView.Adapter<?> adapter, RecyclerView.ItemDecoration... decorations) {
+    final RecyclerView parent = new RecyclerView(RuntimeEnvironment.application);
+    parent.setLayoutManager(layoutManager);
+    for (RecyclerView.ItemDecoration decoration : decorations) {
+      parent.addItemDecoration(decoration);
+    }
+    parent.setAdapter(adapter);
+    measureAndLayout(parent);
+    return parent;
+  }
+
+  /**
+   * Measure and lay out parent again, consuming pending adapter updates.
+   */
+  static void measureAndLayout(RecyclerView parent) {
+    parent.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+    parent.layout(0, 0, WIDTH, HEIGHT);
+  }
+
+  /**
+   * Make decoration the only one attached to parent, laying parent out again if it was not, so
+   * its item offsets take part in layout like in an app.
+   */
+  static void attach(RecyclerView.ItemDecoration decoration, RecyclerView parent) {
+    final int count = parent.getItemDecorationCount();
+    if (count == 1 && parent.getItemDecorationAt(0) == decoration) {
+      return;
+    }
+    for (int i = count - 1; i >= 0; i--) {
+      parent.removeItemDecoration(parent.getItemDecorationAt(i));
+    }
+    parent.addItemDecoration(decoration);
+    measureAndLayout(parent);
+  }
+
+  /**
+   * @return layout state the recycler view hands to its decorations.
+   */
+  static RecyclerView.State stateOf(RecyclerView parent) {
+    try {
+      final Field field = RecyclerView.class.getDeclaredField("mState");
+      field.setAccessible(true);
+      return (RecyclerView.State) field.get(parent);
+    } catch (ReflectiveOperationException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Draw one decoration frame, decoration is attached to parent first.
+   *
+   * @return number of canvas draw operations issued.
+   */
+  static int drawFrame(RecyclerView.ItemDecoration decoration, RecyclerView parent,
+      RecyclerView.State state, CountingCanvas canvas) {
+    attach(decoration, parent);
+    canvas.reset();
+    decoration.onDraw(canvas, parent, state);
+    decoration.onDrawOver(canvas, parent, state);
+    return canvas.getDrawCalls();
+  }
+
+  /**
+   * @return bytes allocated per frame by decoration in steady state, beyond what walking the
+   * children through the same view accessors allocates.
+   */
+  static long allocatedBytesPerFrame(RecyclerView.ItemDecoration decoration,
+      RecyclerView parent) {
+    final RecyclerView.State state = stateOf(parent);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    final long baseline = measureAllocatedBytes(new ChildWalker(), parent, state, canvas);
+    final long allocated = measureAllocatedBytes(decoration, parent, state, canvas);
+    return Math.max(0, allocated - baseline) / MEASURED_FRAMES;
+  }
+
+  static boolean isAllocationCountingSupported() {
+    return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .isThreadAllocatedMemorySupported();
+  }
+
+  private static long measureAllocatedBytes(RecyclerView.ItemDecoration decoration,
+      RecyclerView parent, RecyclerView.State state, CountingCanvas canvas) {
+    final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final long threadId = Thread.currentThread().getId();
+    for (int i = 0; i < WARM_UP_FRAMES; i++) {
+      drawFrame(decoration, parent, state, canvas);
+    }
+    final long start = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < MEASURED_FRAMES; i++) {
+      drawFrame(decoration, parent, state, canvas);
+    }
+    return threads.getThreadAllocatedBytes(threadId) - start;
+  }
+
+  /**
+   * Decoration touching children like the real ones do without drawing, the allocation baseline.
+   */
+  private static final class ChildWalker extends RecyclerView.ItemDecoration {
+
+    private final Rect mBounds = new Rect();
+    private int mSink;
+
+    @Override public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
+      final RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+      final int childCount = parent.getChildCount();
+      for (int i = 0; i < childCount; i++) {
+        final View child = parent.getChildAt(i);
+        final RecyclerView.LayoutParams params =
+            (RecyclerView.LayoutParams) child.getLayoutParams();
+        layoutManager.getDecoratedBoundsWithMargins(child, mBounds);
+        mSink += params.getViewLayoutPosition() + parent.getChildAdapterPosition(child)
+            + parent.getChildLayoutPosition(child) + child.getLeft() + child.getTop()
+            + child.getRight() + child.getBottom() + (int) child.getTranslationX()
+            + (int) child.getTranslationY() + params.leftMargin + params.bottomMargin;
+      }
+    }
+  }
+
+  static class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    private final int mItemCount;
+    private final int mMargin;
+
+    ItemAdapter(int itemCount, int margin) {
+      mItemCount = itemCount;
+      mMargin = margin;
+    }
+
+    @Override public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+      final View view = new View(parent.getContext());
+      final RecyclerView.LayoutParams params =
+          new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ITEM_HEIGHT);
+      params.setMargins(mMargin, mMargin, mMargin, mMargin);
+      view.setLayoutParams(params);
+      return new RecyclerView.ViewHolder(view) {
+      };
+    }
+
+    @Override public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+    }
+
+    @Override public int getItemCount() {
+      return mItemCount;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Color;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+import static com.zac4j.decor.DecorHarness.HEIGHT;
+import static com.zac4j.decor.DecorHarness.WIDTH;
+import static com.zac4j.decor.DecorHarness.drawFrame;
+import static com.zac4j.decor.DecorHarness.layout;
+import static com.zac4j.decor.DecorHarness.stateOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Release of divider caches by trim level and their lazy rebuild.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25, manifest = Config.NONE)
+public class DecorMemoryTest {
+
+  private static final int SPAN_COUNT = 4;
+  private static final int ITEM_COUNT = 1000;
+
+  @Test public void tilesAreReleasedOnlyWhenEverythingIs() {
+    final BitmapRenderer renderer = new BitmapRenderer(3, 5, 2, Color.GRAY);
+    renderer.prepare();
+    final long released = DecorMemory.getReleasedBitmapBytes();
+    renderer.trimMemory(TRIM_MEMORY_RUNNING_LOW);
+    assertTrue(renderer.isLoaded());
+    // Hidden UI is likely shown again soon, tiles are kept.
+    renderer.trimMemory(TRIM_MEMORY_UI_HIDDEN);
+    assertTrue(renderer.isLoaded());
+    renderer.trimMemory(TRIM_MEMORY_RUNNING_CRITICAL);
+    assertFalse(renderer.isLoaded());
+    // Two one period tiles, one byte per pixel.
+    assertEquals(2 * (3 + 5) * 2, DecorMemory.getReleasedBitmapBytes() - released);
+    renderer.prepare();
+    assertTrue(renderer.isLoaded());
+    renderer.trimMemory(TRIM_MEMORY_BACKGROUND);
+    assertFalse(renderer.isLoaded());
+  }
+
+  @Test public void displayListsAreReleasedAndRecordedAgain() {
+    final GridDashDivider divider = GridDashDivider.with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(2)
+        .drawer(true, true, true, true)
+        .hider(false, false, false, false)
+        .offset(0, 0, 0, 0)
+        .cacheDisplayList(true)
+        .incremental(true)
+        .build();
+    final RecyclerView parent =
+        layout(new GridLayoutManager(RuntimeEnvironment.application, SPAN_COUNT), ITEM_COUNT);
+    final RecyclerView.State state = stateOf(parent);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    drawFrame(divider, parent, state, canvas);
+
+    final int displayLists = DecorMemory.getReleasedDisplayListCount();
+    final long cacheBytes = DecorMemory.getReleasedCacheBytes();
+    divider.trimMemory(TRIM_MEMORY_RUNNING_MODERATE);
+    assertEquals(displayLists, DecorMemory.getReleasedDisplayListCount());
+    divider.trimMemory(TRIM_MEMORY_RUNNING_LOW);
+    assertEquals(displayLists + 1, DecorMemory.getReleasedDisplayListCount());
+    assertTrue(DecorMemory.getReleasedCacheBytes() > cacheBytes);
+
+    // Next frame records dividers again and replays them.
+    assertEquals(1, drawFrame(divider, parent, state, canvas));
+    assertEquals(1, canvas.mPictureCalls);
+    assertEquals(1, divider.getParentStateCount());
+  }
+
+  @Test public void trimReachesRegisteredDecorations() {
+    final DashDivider divider = DashDivider.with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(2)
+        .build();
+    assertTrue(DecorMemory.getRegisteredCount() > 0);
+    final int trims = DecorMemory.getTrimCount();
+    DecorMemory.trimMemory(TRIM_MEMORY_UI_HIDDEN);
+    assertEquals(trims + 1, DecorMemory.getTrimCount());
+    // Registration is weak, the decoration is still usable after trimming.
+    divider.setColor(Color.RED);
+  }
+}
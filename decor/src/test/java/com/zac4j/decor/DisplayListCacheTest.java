@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Color;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.zac4j.decor.DecorHarness.HEIGHT;
+import static com.zac4j.decor.DecorHarness.WIDTH;
+import static com.zac4j.decor.DecorHarness.drawFrame;
+import static com.zac4j.decor.DecorHarness.layout;
+import static com.zac4j.decor.DecorHarness.stateOf;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Display list replay of {@link DashDivider} on scroll only frames, and re-recording on anything
+ * else.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25, manifest = Config.NONE)
+public class DisplayListCacheTest {
+
+  private static final int ITEM_COUNT = 1000;
+
+  private DashDivider mDivider;
+  private RecyclerView mParent;
+  private CountingCanvas mCanvas;
+
+  @Before public void recordFirstFrame() {
+    mDivider = DashDivider.with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(2)
+        .color(Color.GRAY)
+        .cacheDisplayList(true)
+        .build();
+    mDivider.setMetricsEnabled(true);
+    mParent = layout(new LinearLayoutManager(RuntimeEnvironment.application), ITEM_COUNT);
+    mCanvas = new CountingCanvas(WIDTH, HEIGHT);
+    drawFrame(mDivider, mParent, stateOf(mParent), mCanvas);
+    assertFalse(mDivider.getMetrics().isLastFrameReplayed());
+    drawFrame(mDivider, mParent, stateOf(mParent), mCanvas);
+    assertTrue(mDivider.getMetrics().isLastFrameReplayed());
+  }
+
+  @Test public void scrollReplaysRecording() {
+    mParent.offsetChildrenVertical(-7);
+    drawFrame(mDivider, mParent, stateOf(mParent), mCanvas);
+    assertTrue(mDivider.getMetrics().isLastFrameReplayed());
+  }
+
+  @Test public void translatedMiddleChildIsRecordedAgain() {
+    // Dragged like by ItemTouchHelper, no item animator runs.
+    mParent.getChildAt(mParent.getChildCount() / 2).setTranslationY(13);
+    drawFrame(mDivider, mParent, stateOf(mParent), mCanvas);
+    assertFalse(mDivider.getMetrics().isLastFrameReplayed());
+    drawFrame(mDivider, mParent, stateOf(mParent), mCanvas);
+    assertTrue(mDivider.getMetrics().isLastFrameReplayed());
+  }
+
+  @Test public void movedMiddleChildIsRecordedAgain() {
+    mParent.getChildAt(mParent.getChildCount() / 2).offsetTopAndBottom(5);
+    drawFrame(mDivider, mParent, stateOf(mParent), mCanvas);
+    assertFalse(mDivider.getMetrics().isLastFrameReplayed());
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Color;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.zac4j.decor.DecorHarness.HEIGHT;
+import static com.zac4j.decor.DecorHarness.ITEM_COUNTS;
+import static com.zac4j.decor.DecorHarness.WIDTH;
+import static com.zac4j.decor.DecorHarness.allocatedBytesPerFrame;
+import static com.zac4j.decor.DecorHarness.drawFrame;
+import static com.zac4j.decor.DecorHarness.isAllocationCountingSupported;
+import static com.zac4j.decor.DecorHarness.layout;
+import static com.zac4j.decor.DecorHarness.stateOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Draw call and allocation budgets of {@link GridDashDivider}.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25, manifest = Config.NONE)
+public class GridDashDividerBudgetTest {
+
+  private static final int SPAN_COUNT = 4;
+  // Bytes a steady state frame may allocate, only covers measurement noise.
+  private static final long ALLOCATION_BUDGET = 16;
+
+  private static GridDashDivider.Builder divider() {
+    return GridDashDivider.with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(2)
+        .color(Color.GRAY)
+        .drawer(true, true, true, true)
+        .hider(false, false, false, false)
+        .offset(0, 0, 0, 0);
+  }
+
+  private static RecyclerView grid(int itemCount) {
+    return layout(new GridLayoutManager(RuntimeEnvironment.application, SPAN_COUNT), itemCount);
+  }
+
+  @Test public void batchDrawIssuesOneDrawCallPerFrame() {
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = grid(itemCount);
+      final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+      final int drawCalls =
+          drawFrame(divider().batchDraw(true).build(), parent, stateOf(parent), canvas);
+      assertEquals("items: " + itemCount, 1, drawCalls);
+      assertEquals("items: " + itemCount, 1, canvas.mLinesCalls);
+    }
+  }
+
+  @Test public void perLineDrawIsBoundedByVisibleItems() {
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = grid(itemCount);
+      final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+      final int drawCalls = drawFrame(divider().build(), parent, stateOf(parent), canvas);
+      assertTrue("items: " + itemCount, drawCalls <= 4 * parent.getChildCount());
+    }
+  }
+
+  @Test public void segmentsOutOfClipAreCulled() {
+    final RecyclerView parent = grid(1000);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    final GridDashDivider divider = divider().build();
+    divider.setMetricsEnabled(true);
+    drawFrame(divider, parent, stateOf(parent), canvas);
+    final int segments = divider.getMetrics().getLastFrameSegments();
+    assertEquals(0, divider.getMetrics().getLastFrameCulled());
+
+    canvas.setClip(0, 0, WIDTH, HEIGHT / 4);
+    final int drawCalls = drawFrame(divider, parent, stateOf(parent), canvas);
+    final int culled = divider.getMetrics().getLastFrameCulled();
+    assertTrue(culled > 0);
+    assertEquals(segments, divider.getMetrics().getLastFrameSegments() + culled);
+    assertEquals(segments - culled, drawCalls);
+    // Every drawn line reaches into the clip.
+    final float[] points = canvas.mLines.getPoints();
+    for (int i = 0; i < canvas.mLines.size(); i += 4) {
+      assertTrue(Math.min(points[i + 1], points[i + 3]) - 1 < HEIGHT / 4);
+    }
+  }
+
+  @Test public void coalesceMergesUniformRowsAndColumns() {
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = grid(itemCount);
+      final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+      final GridDashDivider plain = divider().build();
+      final GridDashDivider coalesced = divider().coalesce(true).build();
+      plain.setMetricsEnabled(true);
+      coalesced.setMetricsEnabled(true);
+      drawFrame(plain, parent, stateOf(parent), canvas);
+      final int coalescedDrawCalls = drawFrame(coalesced, parent, stateOf(parent), canvas);
+      final int visible = visibleChildCount(parent);
+      final int rows = (visible + SPAN_COUNT - 1) / SPAN_COUNT;
+      // Right and bottom lines of every item, left lines of the first column, top lines of the
+      // first row.
+      final int plainSegments = 2 * visible + rows + SPAN_COUNT;
+      assertEquals("items: " + itemCount, plainSegments,
+          plain.getMetrics().getLastFrameSegments());
+      // One run per row bottom and one for the top, one per column right and one for the left.
+      final int runs = rows + 1 + SPAN_COUNT + 1;
+      assertEquals("items: " + itemCount, runs, coalesced.getMetrics().getLastFrameSegments());
+      assertEquals("items: " + itemCount, plainSegments - runs,
+          coalesced.getMetrics().getLastFrameCoalesced());
+      assertTrue("items: " + itemCount, runs < plainSegments);
+      assertEquals("items: " + itemCount, runs, coalescedDrawCalls);
+    }
+  }
+
+  @Test public void incrementalFramesMatchFullFrames() {
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = grid(itemCount);
+      final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+      final GridDashDivider full = divider().build();
+      final GridDashDivider incremental = divider().incremental(true).build();
+      drawFrame(full, parent, stateOf(parent), canvas);
+      final float[] fullLines = lines(canvas);
+      drawFrame(incremental, parent, stateOf(parent), canvas);
+      assertArrayEquals("items: " + itemCount, fullLines, lines(canvas), 0f);
+      // Second frame is served from segment cache.
+      drawFrame(incremental, parent, stateOf(parent), canvas);
+      assertArrayEquals("items: " + itemCount, fullLines, lines(canvas), 0f);
+
+      // A translated child is drawn where it is, the others from cache.
+      final View moved = parent.getChildAt(SPAN_COUNT + 1);
+      moved.setTranslationY(7);
+      drawFrame(full, parent, stateOf(parent), canvas);
+      final float[] movedLines = lines(canvas);
+      assertFalse("items: " + itemCount, Arrays.equals(fullLines, movedLines));
+      drawFrame(incremental, parent, stateOf(parent), canvas);
+      assertArrayEquals("items: " + itemCount, movedLines, lines(canvas), 0f);
+
+      // Back at rest, it is cached again.
+      moved.setTranslationY(0);
+      drawFrame(incremental, parent, stateOf(parent), canvas);
+      assertArrayEquals("items: " + itemCount, fullLines, lines(canvas), 0f);
+      drawFrame(incremental, parent, stateOf(parent), canvas);
+      assertArrayEquals("items: " + itemCount, fullLines, lines(canvas), 0f);
+    }
+  }
+
+  @Test public void prefetchResolvesOnlyUnresolvedDescriptors() {
+    final RecyclerView parent = grid(1000);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    final GridDashDivider divider = divider().build();
+    // Positions bound before the first frame are skipped.
+    divider.prefetch(parent, 0);
+    assertEquals(0, divider.getPrefetchedCount());
+    drawFrame(divider, parent, stateOf(parent), canvas);
+    // Visible items are resolved on draw, the next rows are resolved ahead.
+    final int firstHidden = parent.getChildCount();
+    divider.prefetch(parent, 0);
+    for (int i = 0; i < SPAN_COUNT; i++) {
+      divider.prefetch(parent, firstHidden + i);
+    }
+    assertEquals(SPAN_COUNT, divider.getPrefetchedCount());
+  }
+
+  @Test public void sharedInstanceKeepsStatePerParent() {
+    final GridDashDivider shared = divider().incremental(true).build();
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    // Held, states of parents still alive are kept.
+    final List<RecyclerView> parents = new ArrayList<>();
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = grid(itemCount);
+      final RecyclerView other = grid(itemCount / 2);
+      parents.add(parent);
+      parents.add(other);
+      final int own = drawFrame(divider().build(), parent, stateOf(parent), canvas);
+      final int otherOwn = drawFrame(divider().build(), other, stateOf(other), canvas);
+      // Interleaved frames of one instance draw what dedicated instances draw.
+      for (int frame = 0; frame < 2; frame++) {
+        assertEquals("items: " + itemCount, own,
+            drawFrame(shared, parent, stateOf(parent), canvas));
+        assertEquals("items: " + itemCount, otherOwn,
+            drawFrame(shared, other, stateOf(other), canvas));
+      }
+    }
+    assertEquals(parents.size(), shared.getParentStateCount());
+  }
+
+  @Test public void steadyFramesDoNotAllocate() {
+    assumeTrue(isAllocationCountingSupported());
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = grid(itemCount);
+      assertAllocationBudget("batch, items: " + itemCount,
+          allocatedBytesPerFrame(divider().batchDraw(true).build(), parent));
+      assertAllocationBudget("coalesce, items: " + itemCount,
+          allocatedBytesPerFrame(divider().batchDraw(true).coalesce(true).build(), parent));
+      assertAllocationBudget("incremental, items: " + itemCount,
+          allocatedBytesPerFrame(divider().incremental(true).build(), parent));
+      assertAllocationBudget("reserve space, items: " + itemCount,
+          allocatedBytesPerFrame(divider().reserveSpace(true).build(), parent));
+    }
+  }
+
+  /**
+   * @return number of children laid out within the parent height.
+   */
+  private static int visibleChildCount(RecyclerView parent) {
+    int count = 0;
+    for (int i = 0; i < parent.getChildCount(); i++) {
+      if (parent.getChildAt(i).getTop() < HEIGHT) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return coordinates of the lines drawn since the canvas was reset.
+   */
+  private static float[] lines(CountingCanvas canvas) {
+    return Arrays.copyOf(canvas.mLines.getPoints(), canvas.mLines.size());
+  }
+
+  private static void assertAllocationBudget(String message, long bytesPerFrame) {
+    assertTrue(message + ", allocated " + bytesPerFrame + " bytes per frame",
+        bytesPerFrame <= ALLOCATION_BUDGET);
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Color;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import com.zac4j.decor.geometry.SegmentBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.zac4j.decor.DecorHarness.HEIGHT;
+import static com.zac4j.decor.DecorHarness.ITEM_COUNTS;
+import static com.zac4j.decor.DecorHarness.WIDTH;
+import static com.zac4j.decor.DecorHarness.allocatedBytesPerFrame;
+import static com.zac4j.decor.DecorHarness.drawFrame;
+import static com.zac4j.decor.DecorHarness.isAllocationCountingSupported;
+import static com.zac4j.decor.DecorHarness.layout;
+import static com.zac4j.decor.DecorHarness.stateOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Draw call and allocation budgets of {@link GridDashedDivider}.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25, manifest = Config.NONE)
+public class GridDashedDividerBudgetTest {
+
+  private static final int SPAN_COUNT = 4;
+  // Bytes a steady state frame may allocate, only covers measurement noise.
+  private static final long ALLOCATION_BUDGET = 16;
+
+  private static GridDashedDivider.Builder divider() {
+    return GridDashedDivider.with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(2)
+        .color(Color.GRAY)
+        .drawer(true, true, true, true)
+        .hider(false, false, false, false)
+        .offset(0, 0, 0, 0);
+  }
+
+  @Before public void renderTiles() {
+    // Tiles are rendered in background on first draw, budgets are for frames filling with them.
+    DashStyleCache.obtain(4, 4, 2, Color.GRAY, DashRenderer.BITMAP).getDashRenderer().prepare();
+  }
+
+  private static RecyclerView grid(int itemCount) {
+    return layout(new GridLayoutManager(RuntimeEnvironment.application, SPAN_COUNT), itemCount);
+  }
+
+  @Test public void tiledRectsAreBoundedByVisibleItems() {
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = grid(itemCount);
+      final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+      final int drawCalls = drawFrame(divider().build(), parent, stateOf(parent), canvas);
+      // Each aspect is one tiled rect.
+      assertEquals("items: " + itemCount, drawCalls, canvas.mRectCalls);
+      assertTrue("items: " + itemCount, drawCalls <= 4 * parent.getChildCount());
+    }
+  }
+
+  @Test public void coalescedRowsFillWholeLines() {
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = grid(itemCount);
+      final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+      final int plain = drawFrame(divider().build(), parent, stateOf(parent), canvas);
+      final int coalesced =
+          drawFrame(divider().coalesce(true).build(), parent, stateOf(parent), canvas);
+      // Every run is one tiled rect.
+      assertEquals("items: " + itemCount, coalesced, canvas.mRectCalls);
+      final int visible = visibleChildCount(parent);
+      final int rows = (visible + SPAN_COUNT - 1) / SPAN_COUNT;
+      // Right and bottom lines of every item, left lines of the first column, top lines of the
+      // first row.
+      assertEquals("items: " + itemCount, 2 * visible + rows + SPAN_COUNT, plain);
+      // One run per row bottom and one for the top, one per column right and one for the left.
+      assertEquals("items: " + itemCount, rows + 1 + SPAN_COUNT + 1, coalesced);
+      assertTrue("items: " + itemCount, coalesced < plain);
+    }
+  }
+
+  @Test public void tilesAreNotRenderedUntilFirstDraw() {
+    final BitmapRenderer renderer = new BitmapRenderer(3, 5, 2, Color.GRAY);
+    assertFalse(renderer.isLoaded());
+    final SegmentBuffer segments = new SegmentBuffer();
+    segments.add(0, 10, WIDTH, 10);
+    segments.add(10, 0, 10, HEIGHT);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    // Lines are stroked by the fallback while tiles load.
+    assertEquals(1, renderer.drawLines(canvas, segments));
+    assertEquals(1, canvas.mLinesCalls);
+    assertEquals(0, canvas.mRectCalls);
+    renderer.prepare();
+    canvas.reset();
+    // Lines longer than any tile are one rect each.
+    assertEquals(2, renderer.drawLines(canvas, segments));
+    assertEquals(2, canvas.mRectCalls);
+    assertEquals(0, canvas.mBitmapCalls);
+  }
+
+  @Test public void steadyFramesDoNotAllocate() {
+    assumeTrue(isAllocationCountingSupported());
+    for (int itemCount : ITEM_COUNTS) {
+      final RecyclerView parent = grid(itemCount);
+      assertAllocationBudget("plain, items: " + itemCount,
+          allocatedBytesPerFrame(divider().build(), parent));
+      assertAllocationBudget("coalesce, items: " + itemCount,
+          allocatedBytesPerFrame(divider().coalesce(true).build(), parent));
+      assertAllocationBudget("incremental, items: " + itemCount,
+          allocatedBytesPerFrame(divider().incremental(true).build(), parent));
+    }
+  }
+
+  /**
+   * @return number of children laid out within the parent height.
+   */
+  private static int visibleChildCount(RecyclerView parent) {
+    int count = 0;
+    for (int i = 0; i < parent.getChildCount(); i++) {
+      if (parent.getChildAt(i).getTop() < HEIGHT) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static void assertAllocationBudget(String message, long bytesPerFrame) {
+    assertTrue(message + ", allocated " + bytesPerFrame + " bytes per frame",
+        bytesPerFrame <= ALLOCATION_BUDGET);
+  }
+}
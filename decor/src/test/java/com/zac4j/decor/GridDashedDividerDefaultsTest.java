@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Default look of {@link GridDashedDivider} against the former xhdpi dash bitmaps, scaled to
+ * device density the way the bitmaps were.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25, manifest = Config.NONE)
+public class GridDashedDividerDefaultsTest {
+
+  // Former dash_divider_horizontal.png in drawable-xhdpi: 2px dashes, 4px gaps, 2px high.
+  private static final int BITMAP_DASH_LENGTH = 2;
+  private static final int BITMAP_DASH_GAP = 4;
+  private static final int BITMAP_DASH_THICKNESS = 2;
+  private static final float BITMAP_DENSITY = 2;
+  // Opaque dash pixel of dash_divider_vertical.png.
+  private static final int BITMAP_COLOR = 0xFF6F88A0;
+
+  @Before public void clearStyles() {
+    DashStyleCache.clear();
+  }
+
+  @Test @Config(qualifiers = "mdpi") public void mdpiMatchesBitmapLook() {
+    assertBitmapLook(1);
+  }
+
+  @Test @Config(qualifiers = "hdpi") public void hdpiMatchesBitmapLook() {
+    assertBitmapLook(1.5f);
+  }
+
+  @Test @Config(qualifiers = "xxhdpi") public void xxhdpiMatchesBitmapLook() {
+    assertBitmapLook(3);
+  }
+
+  /**
+   * Assert the default divider uses the style of the bitmaps scaled to density.
+   */
+  private static void assertBitmapLook(float density) {
+    assertEquals(density,
+        RuntimeEnvironment.application.getResources().getDisplayMetrics().density, 0f);
+    // Dash sizes and color are left unset.
+    GridDashedDivider.with(RuntimeEnvironment.application)
+        .drawer(true, true, true, true)
+        .hider(false, false, false, false)
+        .offset(0, 0, 0, 0)
+        .build();
+    final int gap = scale(BITMAP_DASH_GAP, density);
+    final int length = scale(BITMAP_DASH_LENGTH, density);
+    final int thickness = scale(BITMAP_DASH_THICKNESS, density);
+    final int hits = DashStyleCache.hitCount();
+    final int misses = DashStyleCache.missCount();
+    final DashRenderer renderer =
+        DashStyleCache.obtain(gap, length, thickness, BITMAP_COLOR, DashRenderer.BITMAP)
+            .getDashRenderer();
+    // The divider already obtained this exact style.
+    assertEquals(hits + 1, DashStyleCache.hitCount());
+    assertEquals(misses, DashStyleCache.missCount());
+    assertEquals(gap + length, renderer.getPeriod(), 0f);
+    assertEquals(thickness, renderer.getThickness(), 0f);
+    assertEquals(BITMAP_COLOR, renderer.getColor());
+  }
+
+  private static int scale(int bitmapPixels, float density) {
+    return Math.max(1, Math.round(bitmapPixels * density / BITMAP_DENSITY));
+  }
+}
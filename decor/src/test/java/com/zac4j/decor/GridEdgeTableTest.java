@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Rect;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import com.zac4j.decor.geometry.GridGeometry;
+import com.zac4j.decor.geometry.SegmentCuller;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.zac4j.decor.DecorHarness.HEIGHT;
+import static com.zac4j.decor.DecorHarness.WIDTH;
+import static com.zac4j.decor.DecorHarness.layout;
+import static com.zac4j.decor.DecorHarness.measureAndLayout;
+import static com.zac4j.decor.DecorHarness.stateOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Edge masks of {@link GridEdgeTable} against the span size lookup they are derived from, as
+ * adapter notify events shift or drop resolved entries and as the window slides.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25, manifest = Config.NONE)
+public class GridEdgeTableTest {
+
+  private static final int SPAN_COUNT = 3;
+  private static final int ITEM_COUNT = 200;
+
+  // Draws left and top aspects only on edges, right and bottom aspects only off edges, so the
+  // aspect mask spells out the edge mask.
+  private final GridGeometry mGeometry = new GridGeometry(new boolean[] { true, true, true, true },
+      new boolean[] { false, false, true, true }, new float[4], new SegmentCuller());
+
+  private SpanList mSpans;
+  private RecyclerView mParent;
+  private GridEdgeTable mTable;
+
+  @Before public void bindTable() {
+    mSpans = new SpanList(ITEM_COUNT);
+    final GridLayoutManager layoutManager =
+        new GridLayoutManager(RuntimeEnvironment.application, SPAN_COUNT);
+    layoutManager.setSpanSizeLookup(mSpans);
+    mParent = layout(layoutManager, ITEM_COUNT);
+    mTable = new GridEdgeTable(mGeometry);
+    assertTrue(mTable.bind(mParent, stateOf(mParent)));
+  }
+
+  @Test public void leavesSpanIndexCacheOfLookupAlone() {
+    assertFalse(mSpans.isSpanIndexCacheEnabled());
+    assertAspects();
+    assertFalse(mSpans.isSpanIndexCacheEnabled());
+  }
+
+  @Test public void mixedSpanEdgesMatchLookup() {
+    assertAspects();
+    // Resolved from the end backwards, span indices are walked from the first position.
+    final GridEdgeTable table = new GridEdgeTable(mGeometry);
+    table.bind(mParent, stateOf(mParent));
+    for (int position = ITEM_COUNT - 1; position >= 0; position--) {
+      assertEquals("position " + position, expectedAspects(position), table.getAspects(position));
+    }
+  }
+
+  @Test public void dataSetChangeDropsEdges() {
+    assertAspects();
+    mSpans.change(0, mSpans.size());
+    mTable.onChanged();
+    layoutPass();
+    assertAspects();
+  }
+
+  @Test public void rangeChangeDropsFollowingEdges() {
+    assertAspects();
+    mSpans.change(40, 5);
+    mTable.onItemRangeChanged(40, 5);
+    layoutPass();
+    assertAspects();
+  }
+
+  @Test public void insertionMovesEdges() {
+    assertAspects();
+    mSpans.insert(50, 4);
+    mTable.onItemRangeInserted(50, 4);
+    layoutPass();
+    assertAspects();
+    // At the end, previously last group is not last anymore.
+    mSpans.insert(mSpans.size(), 2);
+    mTable.onItemRangeInserted(mSpans.size() - 2, 2);
+    layoutPass();
+    assertAspects();
+  }
+
+  @Test public void removalMovesEdges() {
+    assertAspects();
+    mSpans.remove(30, 7);
+    mTable.onItemRangeRemoved(30, 7);
+    layoutPass();
+    assertAspects();
+    mSpans.remove(0, 1);
+    mTable.onItemRangeRemoved(0, 1);
+    layoutPass();
+    assertAspects();
+    mSpans.remove(mSpans.size() - 3, 3);
+    mTable.onItemRangeRemoved(mSpans.size(), 3);
+    layoutPass();
+    assertAspects();
+  }
+
+  @Test public void moveRewrapsEdges() {
+    assertAspects();
+    mSpans.move(5, 60);
+    mTable.onItemRangeMoved(5, 60, 1);
+    layoutPass();
+    assertAspects();
+    mSpans.move(120, 11);
+    mTable.onItemRangeMoved(120, 11, 1);
+    layoutPass();
+    assertAspects();
+  }
+
+  @Test public void uniformSpansShiftEdges() {
+    final RecyclerView parent =
+        layout(new GridLayoutManager(RuntimeEnvironment.application, SPAN_COUNT), ITEM_COUNT);
+    final GridLayoutManager.SpanSizeLookup lookup =
+        ((GridLayoutManager) parent.getLayoutManager()).getSpanSizeLookup();
+    final GridEdgeTable table = new GridEdgeTable(mGeometry);
+    table.bind(parent, stateOf(parent));
+    int itemCount = ITEM_COUNT;
+    assertAspects(table, lookup, itemCount);
+    // Whole groups shift resolved entries.
+    table.onItemRangeInserted(31, SPAN_COUNT);
+    itemCount += SPAN_COUNT;
+    table.bind(parent, layoutState(false, itemCount));
+    assertAspects(table, lookup, itemCount);
+    table.onItemRangeRemoved(0, 2 * SPAN_COUNT);
+    itemCount -= 2 * SPAN_COUNT;
+    table.bind(parent, layoutState(false, itemCount));
+    assertAspects(table, lookup, itemCount);
+    // Partial groups rewrap following items.
+    table.onItemRangeInserted(17, 1);
+    itemCount++;
+    table.bind(parent, layoutState(false, itemCount));
+    assertAspects(table, lookup, itemCount);
+    table.onItemRangeRemoved(itemCount - 5, 2);
+    itemCount -= 2;
+    table.bind(parent, layoutState(false, itemCount));
+    assertAspects(table, lookup, itemCount);
+    table.onItemRangeMoved(3, 40, 1);
+    table.bind(parent, layoutState(false, itemCount));
+    assertAspects(table, lookup, itemCount);
+  }
+
+  @Test public void updatesWaitForLayout() {
+    final int[] before = new int[ITEM_COUNT];
+    for (int position = 0; position < ITEM_COUNT; position++) {
+      before[position] = mTable.getAspects(position);
+    }
+    mSpans.remove(10, 2);
+    mTable.onItemRangeRemoved(10, 2);
+    mSpans.insert(40, 5);
+    mTable.onItemRangeInserted(40, 5);
+    // Until a layout pass consumes the updates, items keep the positions of the last layout, and
+    // pre-layout still lays them out there.
+    for (int position = 0; position < ITEM_COUNT; position++) {
+      assertEquals("position " + position, before[position], mTable.getAspects(position));
+    }
+    final int generation = mTable.getGeneration();
+    assertTrue(mTable.bind(mParent, layoutState(true, ITEM_COUNT)));
+    assertEquals(generation, mTable.getGeneration());
+    for (int position = 0; position < ITEM_COUNT; position++) {
+      assertEquals("position " + position, before[position], mTable.getAspects(position));
+    }
+    layoutPass();
+    assertAspects();
+  }
+
+  @Test public void updatesCollapseWithoutLayout() {
+    assertAspects();
+    for (int i = 0; i < 100; i++) {
+      mSpans.insert(i, 1);
+      mTable.onItemRangeInserted(i, 1);
+    }
+    layoutPass();
+    assertAspects();
+  }
+
+  @Test public void insertionDuringPredictiveAnimationKeepsEdges() {
+    final GridDashDivider divider = divider();
+    final GridLayoutManager layoutManager =
+        new GridLayoutManager(RuntimeEnvironment.application, SPAN_COUNT);
+    layoutManager.setSpanSizeLookup(mSpans);
+    final RecyclerView.Adapter<?> adapter = new DecorHarness.ItemAdapter(0, 0) {
+      @Override public int getItemCount() {
+        return mSpans.size();
+      }
+    };
+    final boolean[] preLayout = new boolean[1];
+    final RecyclerView.ItemDecoration probe = new RecyclerView.ItemDecoration() {
+      @Override public void getItemOffsets(Rect outRect, View view, RecyclerView parent,
+          RecyclerView.State state) {
+        preLayout[0] |= state.isPreLayout();
+      }
+    };
+    final RecyclerView parent = layout(layoutManager, adapter, divider, probe);
+    mSpans.insert(1, 4);
+    adapter.notifyItemRangeInserted(1, 4);
+    mSpans.remove(8, 1);
+    adapter.notifyItemRangeRemoved(8, 1);
+    measureAndLayout(parent);
+    // Items were laid out at their old positions first.
+    assertTrue(preLayout[0]);
+
+    // A divider resolving the new layout from scratch reserves and draws the same.
+    final GridDashDivider fresh = divider();
+    final Rect bounds = new Rect();
+    final Rect expected = new Rect();
+    assertTrue(parent.getChildCount() > 0);
+    for (int i = 0; i < parent.getChildCount(); i++) {
+      final View child = parent.getChildAt(i);
+      layoutManager.getDecoratedBoundsWithMargins(child, bounds);
+      fresh.getItemOffsets(expected, child, parent, stateOf(parent));
+      assertEquals("child " + i, expected, new Rect(child.getLeft() - bounds.left,
+          child.getTop() - bounds.top, bounds.right - child.getRight(),
+          bounds.bottom - child.getBottom()));
+    }
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    divider.onDraw(canvas, parent, stateOf(parent));
+    final float[] lines = Arrays.copyOf(canvas.mLines.getPoints(), canvas.mLines.size());
+    canvas.reset();
+    fresh.onDraw(canvas, parent, stateOf(parent));
+    assertArrayEquals(lines, Arrays.copyOf(canvas.mLines.getPoints(), canvas.mLines.size()),
+        0f);
+  }
+
+  @Test public void windowSlidesOverLargeAdapters() {
+    final int itemCount = 3 * GridEdgeTable.MAX_ENTRIES;
+    final SpanList spans = new SpanList(itemCount);
+    final GridLayoutManager layoutManager =
+        new GridLayoutManager(RuntimeEnvironment.application, SPAN_COUNT);
+    layoutManager.setSpanSizeLookup(spans);
+    final RecyclerView parent = layout(layoutManager, itemCount);
+    final GridEdgeTable table = new GridEdgeTable(mGeometry);
+    table.bind(parent, stateOf(parent));
+    // Forward past the window, back to the start, then jump to the end and walk backwards.
+    assertAspects(table, spans, itemCount, 0, 300);
+    assertAspects(table, spans, itemCount, GridEdgeTable.MAX_ENTRIES - 100,
+        GridEdgeTable.MAX_ENTRIES + 200);
+    assertAspects(table, spans, itemCount, 0, 300);
+    for (int position = itemCount - 1; position >= itemCount - 300; position--) {
+      assertEquals("position " + position, expectedAspects(spans, itemCount, position),
+          table.getAspects(position));
+    }
+    assertAspects(table, spans, itemCount, 2 * GridEdgeTable.MAX_ENTRIES - 50,
+        2 * GridEdgeTable.MAX_ENTRIES + 50);
+  }
+
+  /**
+   * Bind table in a layout pass of the current item count, consuming pending updates.
+   */
+  private void layoutPass() {
+    assertTrue(mTable.bind(mParent, layoutState(false, mSpans.size())));
+  }
+
+  private static RecyclerView.State layoutState(final boolean preLayout, final int itemCount) {
+    return new RecyclerView.State() {
+      @Override public boolean isPreLayout() {
+        return preLayout;
+      }
+
+      @Override public int getItemCount() {
+        return itemCount;
+      }
+    };
+  }
+
+  private static GridDashDivider divider() {
+    return GridDashDivider.with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(2)
+        .drawer(true, true, true, true)
+        .hider(false, false, true, true)
+        .offset(0, 0, 0, 0)
+        .reserveSpace(true)
+        .build();
+  }
+
+  private void assertAspects() {
+    assertAspects(mTable, mSpans, mSpans.size());
+  }
+
+  private void assertAspects(GridEdgeTable table, GridLayoutManager.SpanSizeLookup lookup,
+      int itemCount) {
+    assertAspects(table, lookup, itemCount, 0, itemCount);
+  }
+
+  /**
+   * Assert aspects of positions in [from, to).
+   */
+  private void assertAspects(GridEdgeTable table, GridLayoutManager.SpanSizeLookup lookup,
+      int itemCount, int from, int to) {
+    for (int position = from; position < to; position++) {
+      assertEquals("position " + position, expectedAspects(lookup, itemCount, position),
+          table.getAspects(position));
+    }
+  }
+
+  private int expectedAspects(int position) {
+    return expectedAspects(mSpans, mSpans.size(), position);
+  }
+
+  /**
+   * Aspects from edges the lookup itself reports, its span index cache is disabled.
+   */
+  private int expectedAspects(GridLayoutManager.SpanSizeLookup lookup, int itemCount,
+      int position) {
+    final int spanIndex = lookup.getSpanIndex(position, SPAN_COUNT);
+    final int group = lookup.getSpanGroupIndex(position, SPAN_COUNT);
+    final int lastGroup = lookup.getSpanGroupIndex(itemCount - 1, SPAN_COUNT);
+    return mGeometry.resolveAspects(GridGeometry.edgesOf(true, spanIndex == 0,
+        spanIndex + lookup.getSpanSize(position) >= SPAN_COUNT, group == 0,
+        group == lastGroup));
+  }
+
+  /**
+   * Span sizes of adapter items, one item in seven spans the whole row, one in five spans two.
+   */
+  static final class SpanList extends GridLayoutManager.SpanSizeLookup {
+
+    private final List<Integer> mSizes = new ArrayList<>();
+    private int mNext;
+
+    SpanList(int itemCount) {
+      insert(0, itemCount);
+    }
+
+    void insert(int position, int count) {
+      for (int i = 0; i < count; i++, mNext++) {
+        mSizes.add(position + i, mNext % 7 == 3 ? SPAN_COUNT : mNext % 5 == 1 ? 2 : 1);
+      }
+    }
+
+    void remove(int position, int count) {
+      mSizes.subList(position, position + count).clear();
+    }
+
+    /**
+     * Give items in range new span sizes.
+     */
+    void change(int position, int count) {
+      remove(position, count);
+      insert(position, count);
+    }
+
+    void move(int fromPosition, int toPosition) {
+      mSizes.add(toPosition, mSizes.remove(fromPosition));
+    }
+
+    int size() {
+      return mSizes.size();
+    }
+
+    @Override public int getSpanSize(int position) {
+      return mSizes.get(position);
+    }
+  }
+}
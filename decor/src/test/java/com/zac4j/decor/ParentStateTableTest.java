@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.content.ComponentCallbacks2;
+import android.support.v7.widget.RecyclerView;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Per parent state isolation of decorations shared by many recycler views.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25, manifest = Config.NONE)
+public class ParentStateTableTest {
+
+  private final ParentStateTable<CountingState> mTable =
+      new ParentStateTable<>(new ParentStateTable.Factory<CountingState>() {
+        @Override public CountingState create() {
+          return new CountingState();
+        }
+      });
+
+  @Test public void keepsOneStatePerParent() {
+    final RecyclerView first = new RecyclerView(RuntimeEnvironment.application);
+    final RecyclerView second = new RecyclerView(RuntimeEnvironment.application);
+    assertSame(mTable.get(first), mTable.get(first));
+    assertNotSame(mTable.get(first), mTable.get(second));
+    assertEquals(2, mTable.size());
+  }
+
+  @Test public void releasesStateOfDetachedParent() {
+    final RecyclerView parent = new RecyclerView(RuntimeEnvironment.application);
+    final CountingState state = mTable.get(parent);
+    mTable.onViewDetachedFromWindow(parent);
+    assertEquals(1, state.mReleaseCount);
+    assertEquals(0, mTable.size());
+    // Parent coming back gets a fresh state.
+    assertNotSame(state, mTable.get(parent));
+  }
+
+  @Test public void trimReachesAllStates() {
+    final CountingState first = mTable.get(new RecyclerView(RuntimeEnvironment.application));
+    final CountingState second = mTable.get(new RecyclerView(RuntimeEnvironment.application));
+    mTable.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+    assertTrue(first.mTrimLevel == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+        && second.mTrimLevel == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+    // Trimmed states stay in use.
+    assertEquals(2, mTable.size());
+  }
+
+  private static final class CountingState implements ParentStateTable.State {
+
+    int mReleaseCount;
+    int mTrimLevel;
+
+    @Override public void trimMemory(int level) {
+      mTrimLevel = level;
+    }
+
+    @Override public void release() {
+      mReleaseCount++;
+    }
+  }
+}
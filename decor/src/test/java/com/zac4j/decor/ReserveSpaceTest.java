@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Rect;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import com.zac4j.decor.geometry.SegmentBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.zac4j.decor.DecorHarness.HEIGHT;
+import static com.zac4j.decor.DecorHarness.ITEM_HEIGHT;
+import static com.zac4j.decor.DecorHarness.WIDTH;
+import static com.zac4j.decor.DecorHarness.drawFrame;
+import static com.zac4j.decor.DecorHarness.layout;
+import static com.zac4j.decor.DecorHarness.measureAndLayout;
+import static com.zac4j.decor.DecorHarness.stateOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lines of decorations attached with reserved space land in the middle of the gutters their item
+ * offsets reserve, past item margins.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25, manifest = Config.NONE)
+public class ReserveSpaceTest {
+
+  private static final int ITEM_COUNT = 100;
+  private static final int SPAN_COUNT = 4;
+  private static final int MARGIN = 6;
+  private static final int THICKNESS = 3;
+
+  private final Rect mBounds = new Rect();
+
+  @Test public void listLinesAreCenteredInReservedGutters() {
+    final DashDivider divider = DashDivider.with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(THICKNESS)
+        .reserveSpace(true)
+        .build();
+    final RecyclerView parent =
+        layout(new LinearLayoutManager(RuntimeEnvironment.application), ITEM_COUNT, MARGIN,
+            divider);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    drawFrame(divider, parent, stateOf(parent), canvas);
+
+    assertTrue(parent.getChildCount() > 0);
+    for (int i = 0; i < parent.getChildCount(); i++) {
+      final View child = parent.getChildAt(i);
+      parent.getLayoutManager().getDecoratedBoundsWithMargins(child, mBounds);
+      // Gutter is reserved after the bottom margin.
+      assertEquals(child.getBottom() + MARGIN + THICKNESS, mBounds.bottom);
+      if (mBounds.bottom <= HEIGHT) {
+        assertTrue("child " + i,
+            hasHorizontalLine(canvas.mLines, mBounds.bottom - THICKNESS / 2f));
+      }
+    }
+  }
+
+  @Test public void gridLinesAreCenteredInReservedGutters() {
+    final GridDashDivider divider = GridDashDivider.with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(THICKNESS)
+        .drawer(true, true, true, true)
+        .hider(false, false, false, false)
+        .offset(0, 0, 0, 0)
+        .reserveSpace(true)
+        .build();
+    final RecyclerView parent =
+        layout(new GridLayoutManager(RuntimeEnvironment.application, SPAN_COUNT), ITEM_COUNT,
+            MARGIN, divider);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    drawFrame(divider, parent, stateOf(parent), canvas);
+
+    assertTrue(parent.getChildCount() > 0);
+    for (int i = 0; i < parent.getChildCount(); i++) {
+      final View child = parent.getChildAt(i);
+      parent.getLayoutManager().getDecoratedBoundsWithMargins(child, mBounds);
+      // Right and bottom aspects are drawn for every item.
+      assertEquals(child.getRight() + MARGIN + THICKNESS, mBounds.right);
+      assertEquals(child.getBottom() + MARGIN + THICKNESS, mBounds.bottom);
+      assertTrue("child " + i, hasVerticalLine(canvas.mLines, mBounds.right - THICKNESS / 2f));
+      if (mBounds.bottom <= HEIGHT) {
+        assertTrue("child " + i,
+            hasHorizontalLine(canvas.mLines, mBounds.bottom - THICKNESS / 2f));
+      }
+    }
+  }
+
+  @Test public void stickyLineIsPushedOutByReservedSectionLine() {
+    final int sectionThickness = 3;
+    final SectionDashDivider divider = SectionDashDivider.with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(1)
+        .sectionDashThickness(sectionThickness)
+        .sections(new int[] { 0, 10, 50 })
+        .sticky(true)
+        .reserveSpace(true)
+        .build();
+    final LinearLayoutManager layoutManager =
+        new LinearLayoutManager(RuntimeEnvironment.application);
+    final RecyclerView parent = layout(layoutManager, ITEM_COUNT, MARGIN, divider);
+    // Last item of the first section is scrolled up until its section line reaches the top.
+    layoutManager.scrollToPositionWithOffset(9, -(ITEM_HEIGHT + 2 * MARGIN - 2));
+    measureAndLayout(parent);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    drawFrame(divider, parent, stateOf(parent), canvas);
+
+    final View child = parent.getChildAt(0);
+    assertEquals(9, parent.getChildLayoutPosition(child));
+    parent.getLayoutManager().getDecoratedBoundsWithMargins(child, mBounds);
+    assertEquals(child.getBottom() + MARGIN + sectionThickness, mBounds.bottom);
+    // Section line is centered in its gutter, sticky line sits right before it.
+    final float sectionLine = mBounds.bottom - sectionThickness / 2f;
+    assertTrue(hasHorizontalLine(canvas.mLines, sectionLine));
+    final float sticky = sectionLine - sectionThickness;
+    assertTrue(sticky < sectionThickness / 2f);
+    assertTrue(hasHorizontalLine(canvas.mLines, sticky));
+  }
+
+  private static boolean hasHorizontalLine(SegmentBuffer lines, float y) {
+    final float[] points = lines.getPoints();
+    for (int i = 0; i < lines.size(); i += 4) {
+      if (points[i + 1] == y && points[i + 3] == y) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasVerticalLine(SegmentBuffer lines, float x) {
+    final float[] points = lines.getPoints();
+    for (int i = 0; i < lines.size(); i += 4) {
+      if (points[i] == x && points[i + 2] == x) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2017 Zaccc (http://github.com/zac4j).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zac4j.decor;
+
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.StaggeredGridLayoutManager;
+import android.view.View;
+import android.view.ViewGroup;
+import com.zac4j.decor.geometry.SegmentBuffer;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.zac4j.decor.DecorHarness.HEIGHT;
+import static com.zac4j.decor.DecorHarness.WIDTH;
+import static com.zac4j.decor.DecorHarness.drawFrame;
+import static com.zac4j.decor.DecorHarness.layout;
+import static com.zac4j.decor.DecorHarness.stateOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Span handling of {@link StaggeredGridDashDivider}: one continuous line per span column, closed
+ * at full span items.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25, manifest = Config.NONE)
+public class StaggeredGridDashDividerTest {
+
+  private static final int SPAN_COUNT = 3;
+  private static final int ITEM_COUNT = 100;
+
+  private static final int ITEM_HEIGHT = 40;
+  private static final int THICKNESS = 2;
+  // One item in seven spans all columns.
+  private static final int FULL_SPAN_PERIOD = 7;
+
+  private static StaggeredGridDashDivider divider() {
+    return StaggeredGridDashDivider.with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(THICKNESS)
+        .color(Color.GRAY)
+        .drawer(true, true, true, true)
+        .hider(false, false, false, false)
+        .build();
+  }
+
+  @Test public void drawsOneRunPerColumnBetweenFullSpanItems() {
+    // Right column dividers only, hidden for the right-most span.
+    final StaggeredGridDashDivider divider = StaggeredGridDashDivider
+        .with(RuntimeEnvironment.application)
+        .dashGap(4)
+        .dashLength(4)
+        .dashThickness(THICKNESS)
+        .color(Color.GRAY)
+        .drawer(false, false, true, false)
+        .hider(false, false, true, false)
+        .build();
+    final RecyclerView parent = layout(
+        new StaggeredGridLayoutManager(SPAN_COUNT, StaggeredGridLayoutManager.VERTICAL),
+        new StaggeredAdapter(ITEM_COUNT));
+    // Taller than the parent, so no run is trimmed to clip.
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, 4 * HEIGHT);
+    drawFrame(divider, parent, stateOf(parent), canvas);
+
+    // Expected extent of each column run, keyed by section and span.
+    final int sectionCount = ITEM_COUNT / FULL_SPAN_PERIOD + 1;
+    final float[] tops = new float[sectionCount * SPAN_COUNT];
+    final float[] bottoms = new float[sectionCount * SPAN_COUNT];
+    final float[] rights = new float[sectionCount * SPAN_COUNT];
+    Arrays.fill(tops, Float.MAX_VALUE);
+    Arrays.fill(bottoms, -Float.MAX_VALUE);
+    final Rect bounds = new Rect();
+    for (int i = 0; i < parent.getChildCount(); i++) {
+      final View child = parent.getChildAt(i);
+      final StaggeredGridLayoutManager.LayoutParams params =
+          (StaggeredGridLayoutManager.LayoutParams) child.getLayoutParams();
+      if (params.isFullSpan()) {
+        continue;
+      }
+      final int position = parent.getChildLayoutPosition(child);
+      final int run = position / FULL_SPAN_PERIOD * SPAN_COUNT + params.getSpanIndex();
+      parent.getLayoutManager().getDecoratedBoundsWithMargins(child, bounds);
+      tops[run] = Math.min(tops[run], bounds.top);
+      bottoms[run] = Math.max(bottoms[run], bounds.bottom);
+      rights[run] = bounds.right;
+    }
+
+    int expectedRuns = 0;
+    for (int run = 0; run < tops.length; run++) {
+      if (tops[run] > bottoms[run] || run % SPAN_COUNT == SPAN_COUNT - 1) {
+        continue;
+      }
+      expectedRuns++;
+      assertTrue("run " + run, hasVerticalRun(canvas.mLines, rights[run] - THICKNESS,
+          tops[run], bottoms[run]));
+    }
+    assertTrue(expectedRuns >= 2 * (SPAN_COUNT - 1));
+    // Nothing but column runs is drawn.
+    assertEquals(expectedRuns, canvas.mLines.segmentCount());
+  }
+
+  @Test public void skipsChildrenWithoutSpan() throws Exception {
+    final RecyclerView parent = layout(
+        new StaggeredGridLayoutManager(SPAN_COUNT, StaggeredGridLayoutManager.VERTICAL),
+        ITEM_COUNT);
+    final CountingCanvas canvas = new CountingCanvas(WIDTH, HEIGHT);
+    final int drawCalls = drawFrame(divider(), parent, stateOf(parent), canvas);
+    assertTrue(drawCalls > 0);
+
+    // Children added by item animations have no span until laid out.
+    final StaggeredGridLayoutManager.LayoutParams params =
+        (StaggeredGridLayoutManager.LayoutParams) parent.getChildAt(1).getLayoutParams();
+    final Field span = StaggeredGridLayoutManager.LayoutParams.class.getDeclaredField("mSpan");
+    span.setAccessible(true);
+    span.set(params, null);
+    assertEquals(StaggeredGridLayoutManager.LayoutParams.INVALID_SPAN_ID, params.getSpanIndex());
+
+    assertTrue(drawFrame(divider(), parent, stateOf(parent), canvas) > 0);
+  }
+
+  private static boolean hasVerticalRun(SegmentBuffer lines, float x, float top,
+      float bottom) {
+    final float[] points = lines.getPoints();
+    for (int i = 0; i < lines.size(); i += 4) {
+      if (points[i] == x && points[i + 2] == x
+          && Math.min(points[i + 1], points[i + 3]) == top
+          && Math.max(points[i + 1], points[i + 3]) == bottom) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Items of three heights, every {@link #FULL_SPAN_PERIOD}th item spans all columns.
+   */
+  private static final class StaggeredAdapter
+      extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    private final int mItemCount;
+
+    StaggeredAdapter(int itemCount) {
+      mItemCount = itemCount;
+    }
+
+    @Override public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+      final View view = new View(parent.getContext());
+      view.setLayoutParams(new StaggeredGridLayoutManager.LayoutParams(
+          ViewGroup.LayoutParams.MATCH_PARENT, ITEM_HEIGHT));
+      return new RecyclerView.ViewHolder(view) {
+      };
+    }
+
+    @Override public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+      final StaggeredGridLayoutManager.LayoutParams params =
+          (StaggeredGridLayoutManager.LayoutParams) holder.itemView.getLayoutParams();
+      params.height = ITEM_HEIGHT * (1 + position % 3);
+      params.setFullSpan(position % FULL_SPAN_PERIOD == FULL_SPAN_PERIOD - 1);
+    }
+
+    @Override public int getItemCount() {
+      return mItemCount;
+    }
+  }
+}